@@ -0,0 +1,99 @@
+package lightemall;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times each phase of generating a square board of each size on its
+// own: weighing the edges, sorting them with every EdgeSort, finding
+// the spanning tree, connecting its edges and randomizing the tiles.
+// It shares the engine's package because the phases are internal. Run
+// with
+//   java -jar bench/target/benchmarks.jar GenerationBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+  @Param({ "8", "64", "256", "1000", "2000" })
+  public int size;
+
+  // sorted edges, their spanning tree and a board to connect it in
+  EdgeList sorted;
+  int[] tree;
+  CompactBoard board;
+
+  @Setup
+  public void setup() {
+    this.sorted = new EdgeList(this.size, this.size, new Random(1));
+    this.sorted.sort(EdgeSort.HEAP);
+    this.tree = this.sorted.spanningTree();
+    this.board = new CompactBoard(this.size, this.size);
+  }
+
+  // The edges sort works on with each strategy, unsorted again before
+  // every call
+  @State(Scope.Thread)
+  public static class Sorting {
+    @Param({ "RECURSIVE_HEAP", "HEAP", "RADIX" })
+    public EdgeSort strategy;
+
+    EdgeList unsorted;
+    EdgeList edges;
+
+    @Setup
+    public void setup(GenerationBenchmark bench) {
+      this.unsorted = new EdgeList(bench.size, bench.size, new Random(1));
+      this.edges = new EdgeList(bench.size, bench.size);
+    }
+
+    @Setup(Level.Invocation)
+    public void unsort() {
+      System.arraycopy(this.unsorted.keys, 0, this.edges.keys, 0, this.unsorted.size);
+      this.edges.size = this.unsorted.size;
+    }
+  }
+
+  @Benchmark
+  public EdgeList edges() {
+    return new EdgeList(this.size, this.size, new Random(1));
+  }
+
+  @Benchmark
+  public long sort(Sorting sorting) {
+    sorting.edges.sort(sorting.strategy);
+    return sorting.edges.keys[0];
+  }
+
+  @Benchmark
+  public int[] spanningTree() {
+    return this.sorted.spanningTree();
+  }
+
+  @Benchmark
+  public CompactBoard connect() {
+    for (int i : this.tree) {
+      this.board.connect(this.sorted.id(i));
+    }
+    return this.board;
+  }
+
+  @Benchmark
+  public CompactBoard randomize() {
+    this.board.randomize(new Random(1));
+    return this.board;
+  }
+}
@@ -0,0 +1,49 @@
+package lightemall.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import lightemall.CompactBoard;
+import lightemall.EdgeSort;
+import lightemall.Solver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times generating and solving whole square boards of each size
+// through the engine's public API. Run with
+//   java -jar bench/target/benchmarks.jar EngineBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+  @Param({ "8", "64", "256", "1000", "2000" })
+  public int size;
+
+  CompactBoard board;
+
+  @Setup
+  public void setup() {
+    this.board = CompactBoard.generate(this.size, this.size, new Random(1), EdgeSort.HEAP);
+  }
+
+  @Benchmark
+  public CompactBoard generate() {
+    return CompactBoard.generate(this.size, this.size, new Random(1), EdgeSort.HEAP);
+  }
+
+  @Benchmark
+  public int solve() {
+    return new Solver(this.board).search();
+  }
+}
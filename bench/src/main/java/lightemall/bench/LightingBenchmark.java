@@ -0,0 +1,56 @@
+package lightemall.bench;
+
+import java.util.concurrent.TimeUnit;
+import lightemall.HeadlessGame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times relighting a whole square board and rotating one tile with the
+// incremental repair, for every size and radius, through the engine's
+// public API. A radius of 2147483647 lights as far as the wires go.
+// Run with
+//   java -jar bench/target/benchmarks.jar LightingBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightingBenchmark {
+  @Param({ "8", "64", "256", "1000", "2000" })
+  public int size;
+  @Param({ "8", "64", "2147483647" })
+  public int radius;
+
+  HeadlessGame game;
+  // the tile the next rotation turns, stepping across the board
+  int next;
+
+  @Setup
+  public void setup() {
+    this.game = HeadlessGame.generate(this.size, this.size, 1);
+    this.game.board.radius = this.radius;
+    this.game.relight();
+  }
+
+  @Benchmark
+  public boolean relight() {
+    this.game.relight();
+    return this.game.isWon();
+  }
+
+  @Benchmark
+  public boolean rotate() {
+    this.next = (this.next + 7919) % (this.size * this.size);
+    return this.game.rotate(this.next / this.size, this.next % this.size);
+  }
+}
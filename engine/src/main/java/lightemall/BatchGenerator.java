@@ -0,0 +1,100 @@
+package lightemall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Generates many boards of one size, one seed each, spread over a fixed
+// pool of worker threads. Every worker keeps its own edge list,
+// union-find, lighting engine and Random and reuses them for every
+// board it makes, so the only allocation per board is the finished
+// CompactBoard, which goes straight to a BoardSink. The board for a
+// seed is the same one new LightEmAll(width, height, new Random(seed))
+// shows
+public class BatchGenerator {
+  int width;
+  int height;
+  EdgeSort edgeSort;
+  int workers;
+  ExecutorService pool;
+
+  public BatchGenerator(int width, int height, int workers) {
+    this.width = width;
+    this.height = height;
+    this.edgeSort = EdgeSort.HEAP;
+    this.workers = workers;
+    this.pool = Executors.newFixedThreadPool(workers);
+  }
+
+  // Generates the boards for the count seeds from firstSeed on, passing
+  // each to sink as soon as it is done, and returns once all are done
+  public void generate(long firstSeed, long count, BoardSink sink) {
+    AtomicLong next = new AtomicLong();
+    List<Future<?>> running = new ArrayList<Future<?>>();
+    for (int w = 0; w < this.workers; w++) {
+      running.add(this.pool.submit(() -> {
+        Worker worker = new Worker(this.width, this.height, this.edgeSort);
+        for (long i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+          sink.accept(firstSeed + i, worker.generate(firstSeed + i));
+        }
+      }));
+    }
+    for (Future<?> f : running) {
+      try {
+        f.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while generating", e);
+      }
+      catch (ExecutionException e) {
+        throw new IllegalStateException("generating a board failed", e.getCause());
+      }
+    }
+  }
+
+  // Stops the worker threads once the current batch is done
+  public void shutdown() {
+    this.pool.shutdown();
+  }
+
+  // The scratch space of one worker thread
+  static class Worker {
+    int width;
+    int height;
+    EdgeSort edgeSort;
+    Random rand;
+    EdgeList edges;
+    DisjointSet sets;
+    LightingEngine engine;
+
+    Worker(int width, int height, EdgeSort edgeSort) {
+      this.width = width;
+      this.height = height;
+      this.edgeSort = edgeSort;
+      this.rand = new Random();
+      this.edges = new EdgeList(width, height);
+      this.sets = new DisjointSet(width * height);
+      this.engine = new LightingEngine(width, height);
+    }
+
+    // Generates the board for one seed, as CompactBoard.generate does
+    // with new Random(seed)
+    CompactBoard generate(long seed) {
+      CompactBoard compact = new CompactBoard(this.width, this.height);
+      this.rand.setSeed(seed);
+      this.edges.fill(this.rand);
+      this.edges.sort(this.edgeSort);
+      this.sets.reset();
+      this.edges.spanningTree(this.sets, compact);
+      compact.randomize(this.rand);
+      compact.relight(this.engine);
+      return compact;
+    }
+  }
+}
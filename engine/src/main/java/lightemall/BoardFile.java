@@ -0,0 +1,159 @@
+package lightemall;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Saves and loads boards in a compact binary file:
+//   a HEADER byte header: magic, version, flags, width, height,
+//     powerCol, powerRow, radius and the number of tree edges
+//   the connection mask of every tile, indexed by col * height + row,
+//     two to a byte with the even index in the low four bits
+//   optionally, the EdgeList ids of the spanning tree in the order
+//     they were accepted, one int each
+// All numbers are big-endian. Lit bits are not saved; they follow from
+// the masks and are recomputed by whoever lights the loaded board
+public class BoardFile {
+  static final int MAGIC = 0x4C454131; // "LEA1"
+  static final int VERSION = 1;
+  static final int HEADER = 32;
+  // the flag set when the file holds the spanning tree
+  static final int HAS_TREE = 1;
+  // how many bytes are written or unpacked at a time
+  static final int BUFFER = 1 << 16;
+
+  // Writes board to path, with the spanning tree ids if tree is not null
+  public static void write(Path path, CompactBoard board, int[] tree) throws IOException {
+    try (Writer out = new Writer(path, board.width, board.height, board.powerCol,
+        board.powerRow, board.radius, tree == null ? -1 : tree.length)) {
+      for (int idx = 0; idx < board.tiles.length; idx++) {
+        out.put(board.mask(idx));
+      }
+      if (tree != null) {
+        for (int id : tree) {
+          out.putTreeId(id);
+        }
+      }
+    }
+  }
+
+  // Maps the file at path into memory and returns a view of it that
+  // reads masks straight from the mapping without copying them
+  public static MappedBoard map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (data.limit() < HEADER || data.getInt(0) != MAGIC) {
+        throw new IOException(path + " is not a board file");
+      }
+      if (data.getShort(4) != VERSION) {
+        throw new IOException(path + " has unknown version " + data.getShort(4));
+      }
+      MappedBoard board = new MappedBoard(data);
+      long size = HEADER + board.packedSize() + 4L * board.treeSize;
+      if (board.width < 0 || board.height < 0 || data.limit() < size) {
+        throw new IOException(path + " is truncated");
+      }
+      return board;
+    }
+  }
+
+  // Loads the file at path into a CompactBoard, unpacking the masks
+  // from the mapping in bulk. The board is not lit yet
+  public static CompactBoard read(Path path) throws IOException {
+    return map(path).toCompact();
+  }
+
+  // Writes a board file one tile at a time through a small buffer, so a
+  // board never has to be in memory as a whole. Every mask must be put,
+  // in index order, before any tree id
+  static class Writer implements TileSink, AutoCloseable {
+    FileChannel channel;
+    ByteBuffer buffer;
+    // the mask waiting for the high half of its byte, or -1
+    int pending;
+
+    // Opens path and writes the header; treeSize is -1 without a tree
+    Writer(Path path, int width, int height, int powerCol, int powerRow, int radius,
+        int treeSize) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      this.buffer = ByteBuffer.allocate(BUFFER);
+      this.pending = -1;
+      this.buffer.putInt(MAGIC);
+      this.buffer.putShort((short) VERSION);
+      this.buffer.putShort((short) (treeSize < 0 ? 0 : HAS_TREE));
+      this.buffer.putInt(width);
+      this.buffer.putInt(height);
+      this.buffer.putInt(powerCol);
+      this.buffer.putInt(powerRow);
+      this.buffer.putInt(radius);
+      this.buffer.putInt(Math.max(0, treeSize));
+    }
+
+    // Writes the mask of the next tile
+    void put(int mask) throws IOException {
+      if (this.pending < 0) {
+        this.pending = mask;
+      }
+      else {
+        this.putByte(this.pending | mask << 4);
+        this.pending = -1;
+      }
+    }
+
+    // Writes the masks of the next column of tiles
+    public void column(int col, byte[] masks) throws IOException {
+      for (byte mask : masks) {
+        this.put(mask);
+      }
+    }
+
+    // Writes the next spanning tree id, after the last mask
+    void putTreeId(int id) throws IOException {
+      this.finishMasks();
+      if (this.buffer.remaining() < 4) {
+        this.flush();
+      }
+      this.buffer.putInt(id);
+    }
+
+    // Writes out a mask still waiting for its pair
+    void finishMasks() throws IOException {
+      if (this.pending >= 0) {
+        this.putByte(this.pending);
+        this.pending = -1;
+      }
+    }
+
+    // Writes one byte of masks
+    void putByte(int packed) throws IOException {
+      if (!this.buffer.hasRemaining()) {
+        this.flush();
+      }
+      this.buffer.put((byte) packed);
+    }
+
+    // Writes out and empties the buffer
+    void flush() throws IOException {
+      this.buffer.flip();
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      }
+      this.buffer.clear();
+    }
+
+    // Writes out everything left and closes the file
+    public void close() throws IOException {
+      try {
+        this.finishMasks();
+        this.flush();
+      }
+      finally {
+        this.channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package lightemall;
+
+// Receives the boards a BatchGenerator finishes. Boards arrive from
+// several worker threads at once and in no particular order, so a sink
+// must be safe to call concurrently
+public interface BoardSink {
+  // Takes the board generated from the given seed
+  void accept(long seed, CompactBoard board);
+}
@@ -0,0 +1,108 @@
+package lightemall;
+
+import java.util.Random;
+
+// A board stored as one byte per tile, indexed by col * height + row.
+// The low four bits of a tile are its Tiles connection mask and the
+// LIT bit records whether it is lit; neighbours are computed from the
+// index rather than stored. LightEmAll(CompactBoard) shows one with
+// GamePieces, and LightEmAll.compact goes the other way
+public class CompactBoard implements TileMasks {
+  // the bit of a tile that is set when it is lit
+  static final int LIT = 16;
+  // the radius a new board is lit to
+  public static final int DEFAULT_RADIUS = 8;
+
+  public int width;
+  public int height;
+  byte[] tiles;
+  // the location of the power station and its effective radius
+  public int powerCol;
+  public int powerRow;
+  public int radius;
+
+  public CompactBoard(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.tiles = new byte[width * height];
+    this.radius = DEFAULT_RADIUS;
+  }
+
+  // Generates a board the same way LightEmAll does, so that the same
+  // seed gives the same tiles
+  public static CompactBoard generate(int width, int height, Random rand, EdgeSort edgeSort) {
+    CompactBoard compact = new CompactBoard(width, height);
+    EdgeList edges = new EdgeList(width, height, rand);
+    edges.sort(edgeSort);
+    for (int i : edges.spanningTree()) {
+      compact.connect(edges.id(i));
+    }
+    compact.randomize(rand);
+    compact.relight(new LightingEngine(width, height));
+    return compact;
+  }
+
+  // Return the index of the tile at col and row
+  public int index(int col, int row) {
+    return col * this.height + row;
+  }
+
+  // Return the connection mask of the tile at index idx
+  public int mask(int idx) {
+    return this.tiles[idx] & 15;
+  }
+
+  // Set the connection mask of the tile at index idx
+  public void setMask(int idx, int mask) {
+    this.tiles[idx] = (byte) ((this.tiles[idx] & ~15) | mask);
+  }
+
+  // Is the tile at index idx lit?
+  public boolean isLit(int idx) {
+    return (this.tiles[idx] & LIT) != 0;
+  }
+
+  // Set whether the tile at index idx is lit
+  void setLit(int idx, boolean lit) {
+    this.tiles[idx] = (byte) (lit ? this.tiles[idx] | LIT : this.tiles[idx] & ~LIT);
+  }
+
+  // Return the index of the neighbour of idx in direction dir, or -1
+  int neighbor(int idx, int dir) {
+    return Tiles.neighbor(idx, dir, this.width, this.height);
+  }
+
+  // Connects the two tiles of the EdgeList edge with the given id
+  void connect(int id) {
+    int from = id >>> 1;
+    if ((id & 1) == 1) {
+      this.setMask(from, this.mask(from) | Tiles.RIGHT_BIT);
+      this.setMask(from + this.height, this.mask(from + this.height) | Tiles.LEFT_BIT);
+    }
+    else {
+      this.setMask(from, this.mask(from) | Tiles.BOTTOM_BIT);
+      this.setMask(from + 1, this.mask(from + 1) | Tiles.TOP_BIT);
+    }
+  }
+
+  // Randomly rotates every tile, drawing from rand exactly as
+  // LightEmAll.randomizeBoard does
+  void randomize(Random rand) {
+    for (int idx = 0; idx < this.tiles.length; idx++) {
+      this.setMask(idx, Tiles.rotate(this.mask(idx), Tiles.randomTurns(rand)));
+    }
+  }
+
+  // Rotates the tile at index idx a quarter turn clockwise
+  public void rotate(int idx) {
+    this.setMask(idx, Tiles.rotate(this.mask(idx)));
+  }
+
+  // Lights the board from the power station with the given engine
+  void relight(LightingEngine engine) {
+    engine.relight(this, this.index(this.powerCol, this.powerRow), this.radius);
+    for (int idx = 0; idx < this.tiles.length; idx++) {
+      this.setLit(idx, engine.isLit(idx));
+    }
+  }
+}
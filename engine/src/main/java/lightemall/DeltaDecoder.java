@@ -0,0 +1,87 @@
+package lightemall;
+
+// Keeps a copy of a remote board up to date from the deltas of a
+// DeltaEncoder. The tiles each delta changed are marked in changed, so
+// a client only redraws those; changed starts empty and is only cleared
+// by the client
+class DeltaDecoder implements TileStates {
+  byte[] states;
+  int[] radii;
+  int power;
+  DirtyTiles changed;
+  // the delta being read and the position in it
+  byte[] in;
+  int pos;
+
+  DeltaDecoder(int tiles) {
+    this.states = new byte[tiles];
+    this.radii = new int[tiles];
+    this.power = -1;
+    this.changed = new DirtyTiles(tiles);
+    this.changed.clear();
+  }
+
+  // Return the connection mask of the tile at index idx
+  public int mask(int idx) {
+    return this.states[idx] & 15;
+  }
+
+  // Is the tile at index idx lit?
+  public boolean isLit(int idx) {
+    return (this.states[idx] & DeltaEncoder.LIT) != 0;
+  }
+
+  // Return the lit radius of the tile at index idx
+  public int litRadius(int idx) {
+    return this.radii[idx];
+  }
+
+  // Applies one delta
+  void apply(byte[] delta) {
+    this.in = delta;
+    this.pos = 0;
+    int flags = this.in[this.pos++];
+    if ((flags & DeltaEncoder.POWER) != 0) {
+      if (this.power >= 0) {
+        this.changed.mark(this.power);
+      }
+      this.power = this.varint();
+      this.changed.mark(this.power);
+    }
+    int end = 0;
+    for (int runs = this.varint(); runs > 0; runs--) {
+      int start = end + this.varint();
+      end = start + this.varint();
+      for (int idx = start; idx < end; idx++) {
+        this.states[idx] = this.in[this.pos++];
+        int zigzag = this.varint();
+        this.radii[idx] = zigzag >>> 1 ^ -(zigzag & 1);
+        this.changed.mark(idx);
+      }
+    }
+    end = 0;
+    for (int runs = this.varint(); runs > 0; runs--) {
+      int start = end + this.varint();
+      int lengthLit = this.varint();
+      end = start + (lengthLit >>> 1);
+      for (int idx = start; idx < end; idx++) {
+        this.states[idx] = (byte) ((this.states[idx] & ~DeltaEncoder.LIT)
+            | (lengthLit & 1) << 4);
+        this.changed.mark(idx);
+      }
+    }
+  }
+
+  // Reads an unsigned varint
+  int varint() {
+    int v = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = this.in[this.pos++];
+      v |= (b & 0x7f) << shift;
+      shift += 7;
+    } while (b < 0);
+    return v;
+  }
+}
@@ -0,0 +1,150 @@
+package lightemall;
+
+import java.util.Arrays;
+
+// Produces compact deltas between the states of a board published to a
+// remote client, for a DeltaDecoder to apply. Only the tiles marked in
+// pending since the last delta are compared, so the work and the size
+// of a delta follow the size of the change, not of the board; mark
+// them by chaining pending from the owner's DirtyTiles. A delta is:
+//   a flags byte, with POWER set if the power station moved
+//   the new power station index, if it moved
+//   the number of full runs, then for each: the gap since the end of
+//     the last one, its length, and for each tile its mask with LIT
+//     and its lit radius, zigzag encoded
+//   the number of lit runs, then for each: the gap since the end of the
+//     last one and length << 1 | lit, for spans of tiles where only
+//     isLit changed, all to the same value; without rle these tiles go
+//     into full runs instead
+// Every number is an unsigned varint
+class DeltaEncoder {
+  static final int POWER = 1;
+  static final int LIT = 16;
+
+  int tiles;
+  // whether lit-only changes are run-length encoded
+  boolean rle;
+  // the state last published: mask | LIT and lit radius of every tile,
+  // and the power station index
+  byte[] states;
+  int[] radii;
+  int power;
+  // the tiles that may have changed since the last delta; all of them
+  // at first, so the first delta is the whole board
+  DirtyTiles pending;
+  // the changed tiles in index order, and whether each is lit-only
+  int[] changed;
+  boolean[] litOnly;
+  // the delta being written
+  byte[] out;
+  int size;
+
+  DeltaEncoder(int tiles, boolean rle) {
+    this.tiles = tiles;
+    this.rle = rle;
+    this.states = new byte[tiles];
+    this.radii = new int[tiles];
+    this.power = -1;
+    this.pending = new DirtyTiles(tiles);
+    this.changed = new int[16];
+    this.litOnly = new boolean[16];
+    this.out = new byte[64];
+  }
+
+  // Returns the delta from the last published state to source with the
+  // power station at index powerIdx, and publishes it
+  byte[] diff(TileStates source, int powerIdx) {
+    int count = 0;
+    int candidates = this.pending.all ? this.tiles : this.pending.size;
+    int[] order = this.pending.all ? null : Arrays.copyOf(this.pending.list, candidates);
+    if (order != null) {
+      Arrays.sort(order);
+    }
+    for (int i = 0; i < candidates; i++) {
+      int idx = order == null ? i : order[i];
+      int state = source.mask(idx) | (source.isLit(idx) ? LIT : 0);
+      int radius = source.litRadius(idx);
+      if (state == this.states[idx] && radius == this.radii[idx]) {
+        continue;
+      }
+      if (count == this.changed.length) {
+        this.changed = Arrays.copyOf(this.changed, count * 2);
+        this.litOnly = Arrays.copyOf(this.litOnly, count * 2);
+      }
+      this.changed[count] = idx;
+      this.litOnly[count++] = this.rle && radius == this.radii[idx]
+          && (state ^ this.states[idx]) == LIT;
+      this.states[idx] = (byte) state;
+      this.radii[idx] = radius;
+    }
+    this.pending.clear();
+
+    this.size = 0;
+    this.put(powerIdx != this.power ? POWER : 0);
+    if (powerIdx != this.power) {
+      this.varint(powerIdx);
+      this.power = powerIdx;
+    }
+    this.runs(count, false);
+    this.runs(count, true);
+    return Arrays.copyOf(this.out, this.size);
+  }
+
+  // Writes the full runs, or the lit runs, of the count changed tiles
+  void runs(int count, boolean lit) {
+    int runs = 0;
+    for (int i = 0; i < count; i++) {
+      if (this.litOnly[i] == lit && (i == 0 || !this.sameRun(i - 1, i))) {
+        runs++;
+      }
+    }
+    this.varint(runs);
+    int end = 0;
+    for (int i = 0; i < count; i++) {
+      if (this.litOnly[i] != lit || (i > 0 && this.sameRun(i - 1, i))) {
+        continue;
+      }
+      int length = 1;
+      while (i + length < count && this.sameRun(i + length - 1, i + length)) {
+        length++;
+      }
+      int start = this.changed[i];
+      this.varint(start - end);
+      end = start + length;
+      if (lit) {
+        this.varint(length << 1 | (this.states[start] & LIT) >> 4);
+      }
+      else {
+        this.varint(length);
+        for (int j = start; j < end; j++) {
+          this.put(this.states[j]);
+          this.varint(this.radii[j] << 1 ^ this.radii[j] >> 31);
+        }
+      }
+    }
+  }
+
+  // Do changed tiles i and j, one after the other, belong to one run?
+  boolean sameRun(int i, int j) {
+    return this.changed[j] == this.changed[i] + 1 && this.litOnly[j] == this.litOnly[i]
+        && (!this.litOnly[i] || ((this.states[this.changed[i]] ^ this.states[this.changed[j]])
+            & LIT) == 0);
+  }
+
+  // Writes one byte of the delta
+  void put(int b) {
+    if (this.size == this.out.length) {
+      this.out = Arrays.copyOf(this.out, this.size * 2);
+    }
+    this.out[this.size++] = (byte) b;
+  }
+
+  // Writes v as an unsigned varint
+  void varint(int v) {
+    while ((v & ~0x7f) != 0) {
+      this.put(v & 0x7f | 0x80);
+      v >>>= 7;
+    }
+    this.put(v);
+  }
+}
@@ -0,0 +1,68 @@
+package lightemall;
+
+import java.util.Arrays;
+
+// The set of tile indices changed since it was last cleared, kept both
+// as flags and as a list so that marking and walking it cost as much
+// as the number of changed tiles
+class DirtyTiles {
+  // whether every tile counts as changed
+  boolean all;
+  // whether each index is already in list
+  boolean[] flags;
+  // the changed indices, in the order first marked
+  int[] list;
+  int size;
+  // another set that every mark is passed on to, or null, and so on
+  // along the chain; clearing this set leaves the others alone
+  DirtyTiles also;
+
+  DirtyTiles(int tiles) {
+    this.flags = new boolean[tiles];
+    this.list = new int[16];
+    this.all = true;
+  }
+
+  // Marks the tile at index idx as changed in this set and every set
+  // chained after it
+  void mark(int idx) {
+    for (DirtyTiles set = this; set != null; set = set.also) {
+      if (!set.all && !set.flags[idx]) {
+        set.flags[idx] = true;
+        if (set.size == set.list.length) {
+          set.list = Arrays.copyOf(set.list, set.list.length * 2);
+        }
+        set.list[set.size++] = idx;
+      }
+    }
+  }
+
+  // Marks every tile as changed in this set and every set chained after it
+  void markAll() {
+    for (DirtyTiles set = this; set != null; set = set.also) {
+      set.clear();
+      set.all = true;
+    }
+  }
+
+  // Takes other out of the chain after this set, so marks no longer
+  // reach it
+  void unlink(DirtyTiles other) {
+    for (DirtyTiles set = this; set.also != null; set = set.also) {
+      if (set.also == other) {
+        set.also = other.also;
+        other.also = null;
+        return;
+      }
+    }
+  }
+
+  // Forgets every change
+  void clear() {
+    for (int i = 0; i < this.size; i++) {
+      this.flags[this.list[i]] = false;
+    }
+    this.size = 0;
+    this.all = false;
+  }
+}
@@ -0,0 +1,69 @@
+package lightemall;
+
+// A union-find forest over the indices 0 .. size - 1, stored in
+// primitive arrays. Finding compresses paths and union links by rank,
+// so any sequence of operations runs in near-linear time without
+// recursion or boxing
+class DisjointSet {
+  // the parent of every index, or the index itself for a root
+  int[] parent;
+  // an upper bound on the height of the tree under every root
+  byte[] rank;
+
+  DisjointSet(int size) {
+    this.parent = new int[size];
+    this.rank = new byte[size];
+    this.reset();
+  }
+
+  // Puts every index back in a set of its own, reusing the arrays
+  void reset() {
+    for (int i = 0; i < this.parent.length; i++) {
+      this.parent[i] = i;
+      this.rank[i] = 0;
+    }
+  }
+
+  // Replaces the forest with the given parents, and the given ranks,
+  // which must bound the height of the tree under every root
+  void set(int[] parents, byte[] ranks) {
+    System.arraycopy(parents, 0, this.parent, 0, this.parent.length);
+    System.arraycopy(ranks, 0, this.rank, 0, this.rank.length);
+  }
+
+  // Returns the representative of the set containing x, pointing
+  // every index on the way directly at it
+  int find(int x) {
+    int root = x;
+    while (this.parent[root] != root) {
+      root = this.parent[root];
+    }
+    while (this.parent[x] != root) {
+      int next = this.parent[x];
+      this.parent[x] = root;
+      x = next;
+    }
+    return root;
+  }
+
+  // Merges the sets containing a and b, returning false if they were
+  // already the same set
+  boolean union(int a, int b) {
+    int rootA = this.find(a);
+    int rootB = this.find(b);
+    if (rootA == rootB) {
+      return false;
+    }
+    if (this.rank[rootA] < this.rank[rootB]) {
+      this.parent[rootA] = rootB;
+    }
+    else if (this.rank[rootA] > this.rank[rootB]) {
+      this.parent[rootB] = rootA;
+    }
+    else {
+      this.parent[rootB] = rootA;
+      this.rank[rootA]++;
+    }
+    return true;
+  }
+}
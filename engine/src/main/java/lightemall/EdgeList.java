@@ -0,0 +1,223 @@
+package lightemall;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// All edges between adjacent tiles of a width by height board, packed
+// into a single long per edge as weight << 32 | id. The id of an edge
+// is 2 * from + 1 for an edge to the right and 2 * from for an edge
+// downwards, where tiles are indexed by col * height + row
+class EdgeList {
+  int width;
+  int height;
+  // the packed edges
+  long[] keys;
+  int size;
+
+  // Generates the edges in the same order and with the same random
+  // weights as LightEmAll.getEdges
+  EdgeList(int width, int height, Random rand) {
+    this(width, height);
+    this.fill(rand);
+  }
+
+  // Room for the edges of a width by height board, to be filled later
+  EdgeList(int width, int height) {
+    this.width = width;
+    this.height = height;
+    int count = Math.max(0, (width - 1) * height) + Math.max(0, (height - 1) * width);
+    this.keys = new long[count];
+  }
+
+  // Replaces the edges with new ones weighted from rand, reusing keys
+  void fill(Random rand) {
+    this.size = 0;
+    for (int col = 0; col < this.width; col++) {
+      for (int row = 0; row < this.height; row++) {
+        int from = col * this.height + row;
+        if (this.height - 1 != row) { // not the bottom row
+          this.keys[this.size++] = pack(rand.nextInt(), 2 * from);
+        }
+        if (this.width - col > 1) { // not the rightmost column
+          this.keys[this.size++] = pack(rand.nextInt(), 2 * from + 1);
+        }
+      }
+    }
+  }
+
+  // Packs a weight and an edge id into one key
+  static long pack(int weight, int id) {
+    return ((long) weight << 32) | (id & 0xffffffffL);
+  }
+
+  // Return the weight of the edge at position i
+  int weight(int i) {
+    return (int) (this.keys[i] >> 32);
+  }
+
+  // Return the id of the edge at position i
+  int id(int i) {
+    return (int) this.keys[i];
+  }
+
+  // Return the index of the left or top tile of the edge with the given id
+  int from(int id) {
+    return id >>> 1;
+  }
+
+  // Return the index of the right or bottom tile of the edge with the given id
+  int to(int id) {
+    return (id & 1) == 1 ? (id >>> 1) + this.height : (id >>> 1) + 1;
+  }
+
+  // Sorts the edges from least to greatest weight. The heap sorts make
+  // the same comparisons and swaps as LightEmAll.heapSort, so edges of
+  // equal weight end up in the same order as there; RADIX leaves them
+  // in id order instead
+  void sort(EdgeSort strategy) {
+    if (strategy == EdgeSort.RECURSIVE_HEAP) {
+      for (int i = (this.size - 1) / 2; i >= 0; i--) {
+        this.downheap(i, this.size);
+      }
+      for (int i = this.size - 1; i >= 0; i--) {
+        this.swap(0, i);
+        this.downheap(0, i);
+      }
+    }
+    else if (strategy == EdgeSort.HEAP) {
+      for (int i = (this.size - 1) / 2; i >= 0; i--) {
+        this.siftDown(i, this.size);
+      }
+      for (int i = this.size - 1; i >= 0; i--) {
+        this.swap(0, i);
+        this.siftDown(0, i);
+      }
+    }
+    else {
+      this.radixSort();
+    }
+  }
+
+  // Recursively swap invalid parent/children positions until the heap
+  // is valid, exactly as LightEmAll.downheap does
+  void downheap(int idx, int heapSize) {
+    int leftIdx = 2 * idx + 1;
+    int rightIdx = 2 * idx + 2;
+
+    if (leftIdx >= heapSize) {
+      // neither left nor right exist
+    }
+    // only left exists
+    else if (rightIdx >= heapSize) {
+      if (this.weight(idx) < this.weight(leftIdx)) {
+        this.swap(idx, leftIdx);
+        this.downheap(leftIdx, heapSize);
+      }
+    }
+    // both left and right exist
+    else {
+      if (this.weight(idx) < this.weight(leftIdx) || this.weight(idx) < this.weight(rightIdx)) {
+        int biggestIdx = this.weight(leftIdx) < this.weight(rightIdx) ? rightIdx : leftIdx;
+        this.swap(idx, biggestIdx);
+        this.downheap(biggestIdx, heapSize);
+      }
+    }
+  }
+
+  // The same steps as downheap, as a loop that holds the moving key in
+  // a local instead of swapping it at every level
+  void siftDown(int idx, int heapSize) {
+    long key = this.keys[idx];
+    int weight = (int) (key >> 32);
+    while (2 * idx + 1 < heapSize) {
+      int child = 2 * idx + 1;
+      if (child + 1 < heapSize && this.weight(child) < this.weight(child + 1)) {
+        child++;
+      }
+      if (weight >= this.weight(child)) {
+        break;
+      }
+      this.keys[idx] = this.keys[child];
+      idx = child;
+    }
+    this.keys[idx] = key;
+  }
+
+  // Swaps the edges at positions i and j
+  void swap(int i, int j) {
+    long prev = this.keys[i];
+    this.keys[i] = this.keys[j];
+    this.keys[j] = prev;
+  }
+
+  // Sorts the keys by weight, a byte at a time from the lowest byte up.
+  // Every pass is stable, and passes where all weights share the same
+  // byte are skipped. fill leaves the edges in id order, so edges of
+  // equal weight stay in id order, which the heap sorts do not keep
+  void radixSort() {
+    long[] from = this.keys;
+    long[] to = new long[this.keys.length];
+    int[] counts = new int[256];
+    for (int shift = 32; shift < 64; shift += 8) {
+      Arrays.fill(counts, 0);
+      for (int i = 0; i < this.size; i++) {
+        counts[this.digit(from[i], shift)]++;
+      }
+      if (this.size == 0 || counts[this.digit(from[0], shift)] == this.size) {
+        continue;
+      }
+      int total = 0;
+      for (int b = 0; b < 256; b++) {
+        int c = counts[b];
+        counts[b] = total;
+        total += c;
+      }
+      for (int i = 0; i < this.size; i++) {
+        to[counts[this.digit(from[i], shift)]++] = from[i];
+      }
+      long[] prev = from;
+      from = to;
+      to = prev;
+    }
+    this.keys = from;
+  }
+
+  // Return the byte of the weight in key starting at the given bit,
+  // with the sign flipped so that negative weights come first
+  int digit(long key, int shift) {
+    return (int) (((key ^ 0x8000000000000000L) >>> shift) & 0xff);
+  }
+
+  // Runs Kruskal's algorithm over the sorted edges and returns the
+  // positions of the edges in the minimum spanning tree, in the order
+  // they were accepted
+  int[] spanningTree() {
+    int tiles = this.width * this.height;
+    int[] tree = new int[Math.max(0, tiles - 1)];
+    DisjointSet sets = new DisjointSet(tiles);
+    int count = 0;
+    for (int i = 0; i < this.size && count < tree.length; i++) {
+      int id = this.id(i);
+      if (sets.union(this.from(id), this.to(id))) {
+        tree[count++] = i;
+      }
+    }
+    return count == tree.length ? tree : Arrays.copyOf(tree, count);
+  }
+
+  // Runs Kruskal's algorithm over the sorted edges with sets, which must
+  // start with every tile apart, and connects the accepted edges in
+  // compact. Returns how many edges were accepted
+  int spanningTree(DisjointSet sets, CompactBoard compact) {
+    int needed = this.width * this.height - 1;
+    int count = 0;
+    for (int i = 0; i < this.size && count < needed; i++) {
+      int id = this.id(i);
+      if (sets.union(this.from(id), this.to(id))) {
+        compact.connect(id);
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,16 @@
+package lightemall;
+
+// The ways an EdgeList can sort its edges by weight. The heap sorts
+// leave equal weights in the same order as LightEmAll.heapSort, so they
+// give the same board for a seed as the original game. RADIX breaks
+// ties by edge id instead, and only agrees with them when the weights
+// are all different, which nextInt makes all but certain
+public enum EdgeSort {
+  // the recursive heap sort used by LightEmAll.heapSort
+  RECURSIVE_HEAP,
+  // the same heap sort without recursion
+  HEAP,
+  // a stable least-significant-digit radix sort on the weights, which
+  // leaves equal weights in id order
+  RADIX
+}
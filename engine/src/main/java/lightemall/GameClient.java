@@ -0,0 +1,170 @@
+package lightemall;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+// A blocking client for GameServer. Commands can be sent one at a time
+// with the methods named after them, or pipelined with send, flush and
+// receive. Its main method runs a load test over loopback
+class GameClient implements AutoCloseable {
+  Socket socket;
+  BufferedReader in;
+  PrintWriter out;
+
+  GameClient(String host, int port) throws IOException {
+    this.socket = new Socket(host, port);
+    this.socket.setTcpNoDelay(true);
+    this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(),
+        StandardCharsets.US_ASCII));
+    this.out = new PrintWriter(this.socket.getOutputStream(), false, StandardCharsets.US_ASCII);
+  }
+
+  // Queues a command line without sending it yet
+  void send(String line) {
+    this.out.print(line + "\n");
+  }
+
+  // Sends the queued commands
+  void flush() {
+    this.out.flush();
+  }
+
+  // Waits for the next reply line
+  String receive() throws IOException {
+    String line = this.in.readLine();
+    if (line == null) {
+      throw new IOException("server closed the connection");
+    }
+    return line;
+  }
+
+  // Sends one command and waits for its reply
+  String call(String line) throws IOException {
+    this.send(line);
+    this.flush();
+    return this.receive();
+  }
+
+  // Starts a new session and returns its id
+  long create(int width, int height, long seed) throws IOException {
+    String reply = this.call("NEW " + width + " " + height + " " + seed);
+    if (!reply.startsWith("SESSION ")) {
+      throw new IOException(reply);
+    }
+    return Long.parseLong(reply.substring(8));
+  }
+
+  // Rotates a tile of a session and returns the LIT reply
+  String rotate(long id, int col, int row) throws IOException {
+    return this.call("ROT " + id + " " + col + " " + row);
+  }
+
+  // Moves the power station of a session and returns the LIT reply
+  String power(long id, int dir) throws IOException {
+    return this.call("POWER " + id + " " + dir);
+  }
+
+  // Jumps the power station of a session as near to col and row as the
+  // wires allow and returns the AT reply
+  String jump(long id, int col, int row) throws IOException {
+    return this.call("JUMP " + id + " " + col + " " + row);
+  }
+
+  // Closes a session, deleting its saved board, and returns the reply
+  String closeSession(long id) throws IOException {
+    return this.call("CLOSE " + id);
+  }
+
+  // Return the server's STATS reply
+  String stats() throws IOException {
+    return this.call("STATS");
+  }
+
+  public void close() throws IOException {
+    this.socket.close();
+  }
+
+  // Drives many sessions over a few connections and prints the p99 time
+  // from sending a move to getting its lit reply, e.g.
+  //   java lightemall.GameClient 7777 10000 8 20
+  // for 10000 sessions over 8 connections, 20 moves each
+  public static void main(String[] args) throws Exception {
+    int port = Integer.parseInt(args[0]);
+    int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+    int connections = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+    long[][] latencies = new long[connections][];
+    List<Thread> threads = new ArrayList<Thread>();
+    long start = System.nanoTime();
+    for (int t = 0; t < connections; t++) {
+      int slot = t;
+      int mine = sessions / connections + (t < sessions % connections ? 1 : 0);
+      Thread thread = new Thread(() -> latencies[slot] = drive(port, mine, rounds, slot));
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long elapsed = System.nanoTime() - start;
+    long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    try (GameClient client = new GameClient("127.0.0.1", port)) {
+      System.out.println("sessions " + sessions + ", moves " + all.length + " in "
+          + elapsed / 1000000 + "ms, client p50 " + all[all.length / 2] / 1000 + "us, p99 "
+          + all[(int) (all.length * 0.99)] / 1000 + "us; server " + client.stats());
+    }
+  }
+
+  // Creates sessions over one connection, plays rounds of one random
+  // rotation per session and closes them, returning the latency of
+  // every move
+  static long[] drive(int port, int sessions, int rounds, long seed) {
+    try (GameClient client = new GameClient("127.0.0.1", port)) {
+      Random rand = new Random(seed);
+      long[] ids = new long[sessions];
+      for (int i = 0; i < sessions; i++) {
+        client.send("NEW 8 8 " + rand.nextInt());
+      }
+      client.flush();
+      HashMap<Long, Integer> slots = new HashMap<Long, Integer>();
+      for (int i = 0; i < sessions; i++) {
+        ids[i] = Long.parseLong(client.receive().substring(8));
+        slots.put(ids[i], i);
+      }
+      long[] latencies = new long[sessions * rounds];
+      long[] sent = new long[sessions];
+      int n = 0;
+      for (int r = 0; r < rounds; r++) {
+        for (int i = 0; i < sessions; i++) {
+          sent[i] = System.nanoTime();
+          client.send("ROT " + ids[i] + " " + rand.nextInt(8) + " " + rand.nextInt(8));
+        }
+        client.flush();
+        for (int i = 0; i < sessions; i++) {
+          String[] reply = client.receive().split(" ");
+          latencies[n++] = System.nanoTime() - sent[slots.get(Long.parseLong(reply[1]))];
+        }
+      }
+      for (int i = 0; i < sessions; i++) {
+        client.send("CLOSE " + ids[i]);
+      }
+      client.flush();
+      for (int i = 0; i < sessions; i++) {
+        client.receive();
+      }
+      return latencies;
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("load test failed", e);
+    }
+  }
+}
@@ -0,0 +1,651 @@
+package lightemall;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hosts many headless games behind a line-based socket protocol:
+//   NEW width height seed   ->  SESSION id
+//   ROT id col row          ->  LIT id litCount won
+//   POWER id dir            ->  LIT id litCount won
+//   JUMP id col row         ->  AT id col row litCount won
+//   CLOSE id                ->  CLOSED id
+//   STATS                   ->  STATS sessions resident p99InputToLitNanos
+// with ERR and a message for anything that cannot be done. One thread
+// reads and writes every connection. Each session is an actor: its
+// inputs go to a mailbox, and a worker from a small pool drains the
+// mailbox, so only one thread at a time touches a board and boards
+// need no locks. A drain folds its moves into an InputQueue, lights
+// once and then answers every move in it. Mailboxes hold about
+// MAILBOX inputs: a connection that fills one stops being read until
+// the session catches up. Sessions that stay idle are saved as board
+// files and dropped from memory, and loaded again on their next input.
+// A resident session keeps only its board: the lighting engine and
+// input queue belong to the worker, which relights a board when it
+// picks up a session it did not serve last. Closing a session forgets
+// it and deletes its board file
+class GameServer {
+  // the inputs a session may have waiting before its senders are paused
+  static final int MAILBOX = 1024;
+  // the largest board a session may ask for
+  static final int MAX_TILES = 1 << 20;
+
+  // the kinds of input a session handles
+  static final int CREATE = 0;
+  static final int ROTATE = 1;
+  static final int POWER = 2;
+  static final int EVICT = 3;
+  static final int JUMP = 4;
+  static final int CLOSE = 5;
+
+  // the lighting engine, input queue and game of each worker thread
+  static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<Workspace>();
+
+  int workerCount;
+  Path snapshots;
+  long idleNanos;
+  ServerSocketChannel server;
+  Selector selector;
+  ExecutorService workers;
+  ScheduledExecutorService reaper;
+  Thread io;
+  volatile boolean running;
+  ConcurrentHashMap<Long, Session> sessions;
+  AtomicLong nextId;
+  AtomicInteger resident;
+  // connections with replies to write, and paused ones to read again
+  ConcurrentLinkedQueue<Connection> flushes;
+  ConcurrentLinkedQueue<Connection> resumes;
+
+  // A server with the given number of workers that saves sessions idle
+  // for idleMillis into the directory snapshots
+  GameServer(int workerCount, Path snapshots, long idleMillis) {
+    this.workerCount = workerCount;
+    this.snapshots = snapshots;
+    this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    this.sessions = new ConcurrentHashMap<Long, Session>();
+    this.nextId = new AtomicLong();
+    this.resident = new AtomicInteger();
+    this.flushes = new ConcurrentLinkedQueue<Connection>();
+    this.resumes = new ConcurrentLinkedQueue<Connection>();
+  }
+
+  // Listens on port, or any free port if it is 0, and returns the port
+  int start(int port) throws IOException {
+    Files.createDirectories(this.snapshots);
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    this.server.bind(new InetSocketAddress("127.0.0.1", port));
+    this.server.configureBlocking(false);
+    this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    this.workers = Executors.newFixedThreadPool(this.workerCount);
+    this.reaper = Executors.newSingleThreadScheduledExecutor();
+    long period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(this.idleNanos) / 2);
+    this.reaper.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    this.running = true;
+    this.io = new Thread(this::loop, "lightemall-server");
+    this.io.start();
+    return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+  }
+
+  // Stops accepting and serving, and waits for the worker threads
+  void stop() throws InterruptedException {
+    this.running = false;
+    this.selector.wakeup();
+    this.io.join();
+    this.reaper.shutdownNow();
+    this.workers.shutdown();
+    this.workers.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  // Asks every session idle for longer than the limit to save itself
+  void evictIdle() {
+    long now = System.nanoTime();
+    for (Session session : this.sessions.values()) {
+      if (session.resident && now - session.lastInput > this.idleNanos) {
+        session.offer(new Input(EVICT, 0, 0, null));
+      }
+    }
+  }
+
+  // Serves every connection until stopped
+  void loop() {
+    try {
+      while (this.running) {
+        this.selector.select();
+        for (Connection c = this.resumes.poll(); c != null; c = this.resumes.poll()) {
+          c.paused = false;
+          if (c.key.isValid()) {
+            c.key.interestOps(c.key.interestOps() | SelectionKey.OP_READ);
+            this.parse(c);
+          }
+        }
+        for (Connection c = this.flushes.poll(); c != null; c = this.flushes.poll()) {
+          c.flushing.set(false);
+          this.write(c);
+        }
+        Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          try {
+            if (key.isAcceptable()) {
+              this.accept();
+            }
+            else {
+              Connection c = (Connection) key.attachment();
+              if (key.isWritable()) {
+                this.write(c);
+              }
+              if (key.isValid() && key.isReadable()) {
+                this.read(c);
+              }
+            }
+          }
+          catch (IOException e) {
+            // one connection failing leaves the others served
+            if (key.channel() != this.server) {
+              this.close(key);
+            }
+          }
+        }
+      }
+      for (SelectionKey key : this.selector.keys()) {
+        key.channel().close();
+      }
+      this.selector.close();
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("server loop failed", e);
+    }
+  }
+
+  // Accepts a new connection, closing it again if it cannot be served
+  void accept() throws IOException {
+    SocketChannel channel = this.server.accept();
+    if (channel != null) {
+      try {
+        channel.configureBlocking(false);
+        Connection c = new Connection(this, channel);
+        c.key = channel.register(this.selector, SelectionKey.OP_READ, c);
+      }
+      catch (IOException e) {
+        channel.close();
+      }
+    }
+  }
+
+  // Stops watching the connection with the given key and closes it
+  void close(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    }
+    catch (IOException e) {
+      // the connection is gone either way
+    }
+  }
+
+  // Reads what has arrived on c and handles every complete line
+  void read(Connection c) {
+    int n;
+    try {
+      n = c.channel.read(c.in);
+    }
+    catch (IOException e) {
+      n = -1;
+    }
+    if (n < 0) {
+      this.close(c.key);
+      return;
+    }
+    this.parse(c);
+    if (!c.in.hasRemaining() && !c.paused) {
+      // a line longer than the buffer is not a command
+      c.in.clear();
+      c.send("ERR line too long");
+    }
+  }
+
+  // Handles the complete lines in c's buffer, stopping early if a
+  // session it sends to is full
+  void parse(Connection c) {
+    ByteBuffer in = c.in;
+    in.flip();
+    int start = in.position();
+    for (int i = start; i < in.limit() && !c.paused; i++) {
+      if (in.get(i) == '\n') {
+        String line = new String(in.array(), start, i - start, StandardCharsets.US_ASCII);
+        this.handle(c, line.trim());
+        start = i + 1;
+      }
+    }
+    in.position(start);
+    in.compact();
+  }
+
+  // Handles one command from c
+  void handle(Connection c, String line) {
+    String[] words = line.split(" +");
+    try {
+      if (words[0].equals("NEW") && words.length == 4) {
+        int width = Integer.parseInt(words[1]);
+        int height = Integer.parseInt(words[2]);
+        long seed = Long.parseLong(words[3]);
+        if (width < 1 || height < 1 || (long) width * height > MAX_TILES) {
+          c.send("ERR bad board size");
+          return;
+        }
+        Session session = new Session(this, this.nextId.incrementAndGet(), width, height);
+        this.sessions.put(session.id, session);
+        this.deliver(c, session, new Input(CREATE, 0, seed, c));
+      }
+      else if ((words[0].equals("ROT") && words.length == 4)
+          || (words[0].equals("JUMP") && words.length == 4)
+          || (words[0].equals("POWER") && words.length == 3)
+          || (words[0].equals("CLOSE") && words.length == 2)) {
+        Session session = this.sessions.get(Long.parseLong(words[1]));
+        if (session == null) {
+          c.send("ERR no session " + words[1]);
+        }
+        else if (words.length == 2) {
+          this.deliver(c, session, new Input(CLOSE, 0, 0, c));
+        }
+        else if (words.length == 4) {
+          int col = Integer.parseInt(words[2]);
+          int row = Integer.parseInt(words[3]);
+          int kind = words[0].equals("ROT") ? ROTATE : JUMP;
+          if (col < 0 || row < 0 || col >= session.width || row >= session.height) {
+            c.send("ERR off the board");
+          }
+          else {
+            this.deliver(c, session, new Input(kind, col * session.height + row, 0, c));
+          }
+        }
+        else {
+          int dir = Integer.parseInt(words[2]);
+          if (dir < 0 || dir > 3) {
+            c.send("ERR bad direction");
+          }
+          else {
+            this.deliver(c, session, new Input(POWER, dir, 0, c));
+          }
+        }
+      }
+      else if (words[0].equals("STATS") && words.length == 1) {
+        c.send("STATS " + this.sessions.size() + " " + this.resident.get() + " "
+            + Metrics.percentile(Metrics.INPUT_TO_LIT, 0.99));
+      }
+      else {
+        c.send("ERR unknown command");
+      }
+    }
+    catch (NumberFormatException e) {
+      c.send("ERR bad number");
+    }
+  }
+
+  // Gives input to session on behalf of c, pausing c if the session's
+  // mailbox is now full
+  void deliver(Connection c, Session session, Input input) {
+    session.lastInput = System.nanoTime();
+    if (session.offer(input) >= MAILBOX) {
+      c.paused = true;
+      c.key.interestOps(c.key.interestOps() & ~SelectionKey.OP_READ);
+      session.waiters.add(c);
+      // the session may have drained before c was added
+      if (session.pending.get() < MAILBOX) {
+        session.wake();
+      }
+    }
+  }
+
+  // Writes as much of c's pending replies as the socket takes, watching
+  // for room to write the rest
+  void write(Connection c) {
+    try {
+      ByteBuffer next;
+      while ((next = c.out.peek()) != null) {
+        c.channel.write(next);
+        if (next.hasRemaining()) {
+          break;
+        }
+        c.out.poll();
+      }
+      if (c.key.isValid()) {
+        int ops = c.key.interestOps();
+        c.key.interestOps(c.out.isEmpty() ? ops & ~SelectionKey.OP_WRITE
+            : ops | SelectionKey.OP_WRITE);
+      }
+    }
+    catch (IOException e) {
+      this.close(c.key);
+      c.out.clear();
+    }
+  }
+
+  // Return where the session with the given id is saved when evicted
+  Path snapshot(long id) {
+    return this.snapshots.resolve("session-" + id + ".lea");
+  }
+
+  // Starts a server, e.g. java lightemall.GameServer 7777 4 /tmp/sessions 60000
+  public static void main(String[] args) throws IOException {
+    Metrics.enabled = true;
+    Metrics.start();
+    GameServer server = new GameServer(args.length > 1 ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors(),
+        Path.of(args.length > 2 ? args[2] : "sessions"),
+        args.length > 3 ? Long.parseLong(args[3]) : 60000);
+    System.out.println("listening on " + server.start(args.length > 0
+        ? Integer.parseInt(args[0]) : 7777));
+  }
+
+  // One move or request for a session, with the connection to answer
+  static class Input {
+    int kind;
+    // the tile or direction of a move
+    int value;
+    long seed;
+    Connection from;
+    long arrived;
+
+    Input(int kind, int value, long seed, Connection from) {
+      this.kind = kind;
+      this.value = value;
+      this.seed = seed;
+      this.from = from;
+      this.arrived = System.nanoTime();
+    }
+  }
+
+  // What a worker needs to play one session at a time: a game over the
+  // session's board and the engine lighting it, and the queue its moves
+  // are folded into between flushes
+  static class Workspace {
+    int width;
+    int height;
+    LightingEngine lighting;
+    InputQueue queue;
+    HeadlessGame game;
+    // the session whose board the engine was last lit for, or null
+    Session owner;
+
+    Workspace(int width, int height) {
+      this.width = width;
+      this.height = height;
+      this.lighting = new LightingEngine(width, height);
+      this.queue = new InputQueue(width, height);
+    }
+  }
+
+  // A client socket with its unread input and unwritten replies
+  static class Connection {
+    GameServer server;
+    SocketChannel channel;
+    SelectionKey key;
+    ByteBuffer in;
+    ConcurrentLinkedQueue<ByteBuffer> out;
+    // whether c is waiting in the server's flushes
+    AtomicBoolean flushing;
+    // whether reading is paused until a full session catches up; only
+    // the server thread uses it
+    boolean paused;
+
+    Connection(GameServer server, SocketChannel channel) {
+      this.server = server;
+      this.channel = channel;
+      this.in = ByteBuffer.allocate(4096);
+      this.out = new ConcurrentLinkedQueue<ByteBuffer>();
+      this.flushing = new AtomicBoolean();
+    }
+
+    // Queues a reply line, from any thread
+    void send(String line) {
+      this.out.add(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII)));
+      if (this.flushing.compareAndSet(false, true)) {
+        this.server.flushes.add(this);
+        this.server.selector.wakeup();
+      }
+    }
+  }
+
+  // One board and its mailbox. Only the worker draining the mailbox
+  // touches board, and only one worker drains it at a time
+  static class Session {
+    GameServer server;
+    long id;
+    int width;
+    int height;
+    // the board, or null while it is saved to disk or once closed
+    CompactBoard board;
+    // the workspace that last lit board, which is still lit for it if
+    // it has not served another session since
+    Workspace workspace;
+    boolean closed;
+    volatile boolean resident;
+    volatile long lastInput;
+    ConcurrentLinkedQueue<Input> mailbox;
+    AtomicInteger pending;
+    // whether a worker is draining the mailbox or about to
+    AtomicBoolean scheduled;
+    // connections paused because the mailbox was full
+    ConcurrentLinkedQueue<Connection> waiters;
+    // the moves folded into queue and not yet answered
+    ArrayList<Input> batch;
+
+    Session(GameServer server, long id, int width, int height) {
+      this.server = server;
+      this.id = id;
+      this.width = width;
+      this.height = height;
+      this.lastInput = System.nanoTime();
+      this.mailbox = new ConcurrentLinkedQueue<Input>();
+      this.pending = new AtomicInteger();
+      this.scheduled = new AtomicBoolean();
+      this.waiters = new ConcurrentLinkedQueue<Connection>();
+      this.batch = new ArrayList<Input>();
+    }
+
+    // Adds input to the mailbox and returns how many inputs are waiting
+    int offer(Input input) {
+      this.mailbox.add(input);
+      int waiting = this.pending.incrementAndGet();
+      this.wake();
+      return waiting;
+    }
+
+    // Makes sure a worker will drain the mailbox
+    void wake() {
+      if (this.scheduled.compareAndSet(false, true)) {
+        this.server.workers.execute(this::drain);
+      }
+    }
+
+    // Handles every input in the mailbox, answering the moves once they
+    // have been applied and lit together
+    void drain() {
+      do {
+        for (Input input = this.mailbox.poll(); input != null; input = this.mailbox.poll()) {
+          this.pending.decrementAndGet();
+          this.handle(input);
+        }
+        this.flush();
+        for (Connection c = this.waiters.poll(); c != null; c = this.waiters.poll()) {
+          this.server.resumes.add(c);
+          this.server.selector.wakeup();
+        }
+        this.scheduled.set(false);
+      } while (!this.mailbox.isEmpty() && this.scheduled.compareAndSet(false, true));
+    }
+
+    // Handles one input on the worker draining the mailbox
+    void handle(Input input) {
+      if (this.closed) {
+        if (input.from != null) {
+          input.from.send("ERR no session " + this.id);
+        }
+      }
+      else if (input.kind == CREATE) {
+        this.board = CompactBoard.generate(this.width, this.height, new Random(input.seed),
+            EdgeSort.HEAP);
+        this.resident = true;
+        this.server.resident.incrementAndGet();
+        input.from.send("SESSION " + this.id);
+      }
+      else if (input.kind == EVICT) {
+        this.flush();
+        if (this.resident && System.nanoTime() - this.lastInput > this.server.idleNanos) {
+          this.evict();
+        }
+      }
+      else if (input.kind == CLOSE) {
+        this.close(input.from);
+      }
+      else if (!this.restore(input)) {
+        return;
+      }
+      else if (input.kind == JUMP) {
+        // a jump lands where the wires allow after the moves before it,
+        // so those are lit first
+        this.flush();
+        HeadlessGame game = this.game();
+        int to = game.jumpPower(input.value / this.height, input.value % this.height);
+        Metrics.record(Metrics.INPUT_TO_LIT, System.nanoTime() - input.arrived);
+        input.from.send("AT " + this.id + " " + to / this.height + " " + to % this.height + " "
+            + game.lighting.litCount + " " + (game.isWon() ? 1 : 0));
+      }
+      else {
+        this.game();
+        InputQueue queue = this.workspace.queue;
+        if (input.kind == ROTATE) {
+          queue.rotate(input.value);
+        }
+        else {
+          queue.movePower(this.board, this.board.index(this.board.powerCol,
+              this.board.powerRow), input.value);
+        }
+        this.batch.add(input);
+      }
+    }
+
+    // Return a game over the board, lit by this worker's workspace. The
+    // board is only relit if the workspace served another session, or
+    // another worker served this one, since it was last lit here
+    HeadlessGame game() {
+      Workspace workspace = WORKSPACE.get();
+      if (workspace == null || workspace.width != this.width
+          || workspace.height != this.height) {
+        workspace = new Workspace(this.width, this.height);
+        WORKSPACE.set(workspace);
+      }
+      if (this.workspace != workspace || workspace.owner != this) {
+        workspace.game = new HeadlessGame(this.board, workspace.lighting);
+        workspace.queue.clear();
+        workspace.owner = this;
+        this.workspace = workspace;
+      }
+      return workspace.game;
+    }
+
+    // Applies the batched moves, lighting once, and answers each of them
+    void flush() {
+      if (this.batch.isEmpty()) {
+        return;
+      }
+      HeadlessGame game = this.game();
+      game.apply(this.workspace.queue);
+      String reply = "LIT " + this.id + " " + game.lighting.litCount + " "
+          + (game.isWon() ? 1 : 0);
+      long now = System.nanoTime();
+      for (Input input : this.batch) {
+        Metrics.record(Metrics.INPUT_TO_LIT, now - input.arrived);
+        input.from.send(reply);
+      }
+      this.batch.clear();
+    }
+
+    // Drops the board from memory, letting go of the workspace lit for it
+    void drop() {
+      if (this.workspace != null && this.workspace.owner == this) {
+        this.workspace.owner = null;
+        this.workspace.game = null;
+      }
+      this.workspace = null;
+      this.board = null;
+      this.resident = false;
+      this.server.resident.decrementAndGet();
+    }
+
+    // Saves the board to its snapshot file and drops it from memory
+    void evict() {
+      try {
+        BoardFile.write(this.server.snapshot(this.id), this.board, null);
+        this.drop();
+      }
+      catch (IOException e) {
+        // keep the session in memory and try again when it is next idle
+      }
+    }
+
+    // Answers the moves still batched, deletes the snapshot file and
+    // tells from the session is closed before forgetting it, so from
+    // hears that before any refusal. Inputs still on their way are
+    // refused
+    void close(Connection from) {
+      this.flush();
+      if (this.resident) {
+        this.drop();
+      }
+      this.closed = true;
+      try {
+        Files.deleteIfExists(this.server.snapshot(this.id));
+      }
+      catch (IOException e) {
+        // the file is never read again, so leaving it is harmless
+      }
+      from.send("CLOSED " + this.id);
+      this.server.sessions.remove(this.id);
+    }
+
+    // Loads the board back if it was evicted, answering input with an
+    // error and returning false if that fails
+    boolean restore(Input input) {
+      if (this.resident) {
+        return true;
+      }
+      try {
+        this.board = BoardFile.read(this.server.snapshot(this.id));
+        this.resident = true;
+        this.server.resident.incrementAndGet();
+        return true;
+      }
+      catch (IOException e) {
+        input.from.send("ERR cannot restore session " + this.id);
+        return false;
+      }
+    }
+  }
+}
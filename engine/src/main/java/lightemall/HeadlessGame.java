@@ -0,0 +1,126 @@
+package lightemall;
+
+import java.util.Random;
+
+// A game of LightEmAll without a window: a CompactBoard and the engine
+// that lights it, driven by the same moves as the mouse and arrow keys.
+// It plays exactly like LightEmAll for the same board and moves
+public class HeadlessGame {
+  public CompactBoard board;
+  LightingEngine lighting;
+
+  public HeadlessGame(CompactBoard board) {
+    this(board, new LightingEngine(board.width, board.height));
+  }
+
+  // A game that lights board with an engine of the same size, which may
+  // have lit other boards before
+  HeadlessGame(CompactBoard board, LightingEngine lighting) {
+    this.board = board;
+    this.lighting = lighting;
+    this.relight();
+  }
+
+  // Generates the board LightEmAll generates for the same size and seed
+  public static HeadlessGame generate(int width, int height, long seed) {
+    return new HeadlessGame(CompactBoard.generate(width, height, new Random(seed),
+        EdgeSort.HEAP));
+  }
+
+  // Rotates the tile at col and row a quarter turn clockwise and repairs
+  // the lighting around it, returning false if it is off the board
+  public boolean rotate(int col, int row) {
+    return this.rotate(col, row, 1);
+  }
+
+  // Rotates the tile at col and row the given number of quarter turns
+  // clockwise, repairing the lighting once, and returns false if it is
+  // off the board
+  public boolean rotate(int col, int row, int turns) {
+    if (col < 0 || row < 0 || col >= this.board.width || row >= this.board.height) {
+      return false;
+    }
+    int idx = this.board.index(col, row);
+    this.board.setMask(idx, Tiles.rotate(this.board.mask(idx), turns));
+    this.lighting.rotated(this.board, idx,
+        this.board.index(this.board.powerCol, this.board.powerRow), this.board.radius);
+    for (int i = 0; i < this.lighting.changedSize; i++) {
+      int changed = this.lighting.changed[i];
+      this.board.setLit(changed, this.lighting.isLit(changed));
+    }
+    return true;
+  }
+
+  // Moves the power station one tile in the given Tiles direction if it
+  // is connected that way, relighting only the tiles lit before or
+  // after, and returns whether it moved
+  public boolean movePower(int dir) {
+    int to = this.lighting.linked(this.board,
+        this.board.index(this.board.powerCol, this.board.powerRow), dir);
+    if (to >= 0) {
+      this.movePowerTo(to);
+    }
+    return to >= 0;
+  }
+
+  // Moves the power station straight to the tile it can reach along
+  // connected wires that is nearest to col and row, and returns the
+  // index it ends up at
+  public int jumpPower(int col, int row) {
+    int from = this.board.index(this.board.powerCol, this.board.powerRow);
+    col = Math.max(0, Math.min(this.board.width - 1, col));
+    row = Math.max(0, Math.min(this.board.height - 1, row));
+    int to = this.lighting.nearest(this.board, from, this.board.index(col, row));
+    if (to != from) {
+      this.movePowerTo(to);
+    }
+    return to;
+  }
+
+  // Moves the power station to the tile at index to, which must be
+  // connected to it, and relights the tiles lit before or after
+  void movePowerTo(int to) {
+    int from = this.board.index(this.board.powerCol, this.board.powerRow);
+    this.board.powerCol = to / this.board.height;
+    this.board.powerRow = to % this.board.height;
+    this.lighting.moved(this.board, from, to, this.board.radius);
+    for (int i = 0; i < this.lighting.changedSize; i++) {
+      int changed = this.lighting.changed[i];
+      this.board.setLit(changed, this.lighting.isLit(changed));
+    }
+  }
+
+  // Applies the net moves of queue, relighting once: the whole board if
+  // the power station moved, or else around each tile whose mask
+  // changed. The queue is cleared afterwards
+  void apply(InputQueue queue) {
+    if (queue.power >= 0) {
+      for (int i = 0; i < queue.touchedSize; i++) {
+        int idx = queue.touched[i];
+        this.board.setMask(idx, queue.mask(this.board, idx));
+      }
+      this.board.powerCol = queue.power / this.board.height;
+      this.board.powerRow = queue.power % this.board.height;
+      this.relight();
+    }
+    else {
+      for (int i = 0; i < queue.touchedSize; i++) {
+        int idx = queue.touched[i];
+        if (queue.turns(idx) != 0) {
+          this.rotate(idx / this.board.height, idx % this.board.height, queue.turns(idx));
+        }
+      }
+    }
+    queue.clear();
+  }
+
+  // Relights the whole board from the power station
+  public void relight() {
+    this.board.relight(this.lighting);
+  }
+
+  // Is every tile lit?
+  public boolean isWon() {
+    return this.lighting.allLit();
+  }
+}
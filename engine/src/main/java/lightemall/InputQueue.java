@@ -0,0 +1,81 @@
+package lightemall;
+
+import java.util.Arrays;
+
+// Collects the moves made during one tick so they can be applied
+// together. Rotations of the same tile fold into one net rotation, so
+// four clicks on a tile cost nothing, and power station moves are
+// checked against the masks the queued rotations will leave, so they
+// succeed or fail exactly as they would have one by one. The owner
+// applies the net changes and relights once, then clears the queue
+class InputQueue {
+  static final int LISTED = 4;
+
+  int width;
+  int height;
+  // the net quarter turns queued for every tile, with LISTED set once
+  // the tile is in touched
+  byte[] turns;
+  // the tiles with queued turns, each listed once
+  int[] touched;
+  int touchedSize;
+  // where the queued moves leave the power station, or -1 if none moved it
+  int power;
+  // how many events were queued since the last clear
+  int events;
+
+  InputQueue(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.turns = new byte[width * height];
+    this.touched = new int[16];
+    this.power = -1;
+  }
+
+  // Queues a quarter turn clockwise of the tile at index idx
+  void rotate(int idx) {
+    if ((this.turns[idx] & LISTED) == 0) {
+      if (this.touchedSize == this.touched.length) {
+        this.touched = Arrays.copyOf(this.touched, this.touchedSize * 2);
+      }
+      this.touched[this.touchedSize++] = idx;
+    }
+    this.turns[idx] = (byte) (LISTED | (this.turns[idx] + 1) & 3);
+    this.events++;
+  }
+
+  // Queues moving the power station, now at index powerIdx of tiles, one
+  // tile in direction dir, if the queued rotations leave it connected
+  // that way, and returns whether it will move
+  boolean movePower(TileMasks tiles, int powerIdx, int dir) {
+    this.events++;
+    int from = this.power < 0 ? powerIdx : this.power;
+    int to = Tiles.neighbor(from, dir, this.width, this.height);
+    if (to >= 0 && Tiles.connected(this.mask(tiles, from), dir, this.mask(tiles, to))) {
+      this.power = to;
+      return true;
+    }
+    return false;
+  }
+
+  // Return the mask the tile at index idx of tiles will have once the
+  // queued rotations are applied
+  int mask(TileMasks tiles, int idx) {
+    return Tiles.rotate(tiles.mask(idx), this.turns(idx));
+  }
+
+  // Return the net quarter turns queued for the tile at index idx
+  int turns(int idx) {
+    return this.turns[idx] & 3;
+  }
+
+  // Forgets every queued move
+  void clear() {
+    for (int i = 0; i < this.touchedSize; i++) {
+      this.turns[this.touched[i]] = 0;
+    }
+    this.touchedSize = 0;
+    this.power = -1;
+    this.events = 0;
+  }
+}
@@ -0,0 +1,364 @@
+package lightemall;
+
+import java.util.Arrays;
+
+// Lights a board with a breadth-first pass from the power station.
+// Every piece is visited at most once, so a full relight is linear
+// in the number of pieces no matter how large the radius is. The
+// engine only keeps distances; owners copy them into their own lit
+// state with isLit and litRadius
+class LightingEngine {
+  // the distance recorded for pieces the power does not reach
+  static final int UNREACHED = Integer.MAX_VALUE;
+
+  // the width and height of the board being lit
+  int width;
+  int height;
+  // the shortest distance from the power station to every piece,
+  // indexed by col * height + row
+  int[] dist;
+  // the breadth-first worklist, reused between passes
+  int[] queue;
+  // pending (distance, index) pairs while repairing after a rotation,
+  // kept as a binary min-heap of distance << 32 | index
+  long[] heap;
+  int heapSize;
+  // the indices whose distance changed during the last repair
+  int[] changed;
+  int changedSize;
+  // whether an index is already recorded in changed
+  boolean[] marked;
+  // how many pieces are currently lit
+  int litCount;
+
+  LightingEngine(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.dist = new int[width * height];
+    this.queue = new int[width * height];
+    this.heap = new long[16];
+    this.changed = new int[16];
+    this.marked = new boolean[width * height];
+    Arrays.fill(this.dist, UNREACHED);
+  }
+
+  // Finds every piece of tiles connected to the power station at index
+  // powerIdx within radius steps
+  void relight(TileMasks tiles, int powerIdx, int radius) {
+    Arrays.fill(this.dist, UNREACHED);
+    this.litCount = 0;
+    if (radius >= 0) {
+      this.litCount = this.spread(tiles, powerIdx, radius);
+    }
+    Metrics.record(Metrics.LIGHT_VISITS, this.litCount);
+  }
+
+  // Is every piece lit? Constant time, from the running count
+  boolean allLit() {
+    return this.litCount == this.width * this.height;
+  }
+
+  // Return the index of the first piece that is not lit, stopping at
+  // the first one found, or -1 if every piece is lit
+  int firstUnlit() {
+    if (this.allLit()) {
+      return -1;
+    }
+    for (int i = 0; i < this.dist.length; i++) {
+      if (this.dist[i] == UNREACHED) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Is the piece at index idx lit?
+  boolean isLit(int idx) {
+    return this.dist[idx] != UNREACHED;
+  }
+
+  // Return how far inside the radius the piece at index idx is lit,
+  // as recorded in GamePiece.litRadius
+  int litRadius(int idx, int radius) {
+    return radius - this.dist[idx];
+  }
+
+  // Breadth-first search from the piece at index start, stopping at
+  // pieces that are radius steps away, and returning how many pieces
+  // were reached
+  int spread(TileMasks tiles, int start, int radius) {
+    int head = 0;
+    int tail = 0;
+    this.dist[start] = 0;
+    this.queue[tail++] = start;
+
+    while (head < tail) {
+      int idx = this.queue[head++];
+      int next = this.dist[idx] + 1;
+      if (next > radius) {
+        continue;
+      }
+      for (int dir = 0; dir < 4; dir++) {
+        int n = this.linked(tiles, idx, dir);
+        if (n >= 0 && this.dist[n] == UNREACHED) {
+          this.dist[n] = next;
+          this.queue[tail++] = n;
+        }
+      }
+    }
+    return tail;
+  }
+
+  // Repairs the lighting after the piece at index idx was rotated.
+  // Only pieces whose distance to the power station changed are
+  // revisited, so the cost follows the size of the change rather than
+  // the size of the board, and those pieces are left in changed.
+  // Assumes dist matched the board before the rotation
+  void rotated(TileMasks tiles, int idx, int powerIdx, int radius) {
+    this.changedSize = 0;
+    if (radius < 0) {
+      return;
+    }
+
+    // invalidate every piece that lost all of its neighbours one step
+    // closer to the power station, and recheck the pieces after it
+    int tail = 0;
+    this.queue = this.push(this.queue, tail++, idx);
+    for (int dir = 0; dir < 4; dir++) {
+      int n = this.neighbor(idx, dir);
+      if (n >= 0) {
+        this.queue = this.push(this.queue, tail++, n);
+      }
+    }
+    for (int head = 0; head < tail; head++) {
+      int v = this.queue[head];
+      int d = this.dist[v];
+      if (d == UNREACHED || v == powerIdx || this.supported(tiles, v, d)) {
+        continue;
+      }
+      this.dist[v] = UNREACHED;
+      this.litCount--;
+      this.mark(v);
+      for (int dir = 0; dir < 4; dir++) {
+        int n = this.linked(tiles, v, dir);
+        if (n >= 0 && this.dist[n] == d + 1) {
+          this.queue = this.push(this.queue, tail++, n);
+        }
+      }
+    }
+
+    // reseed the invalidated pieces and the rotated neighbourhood from
+    // their closest valid neighbour, then relax outwards in distance order
+    this.heapSize = 0;
+    int invalidated = this.changedSize;
+    for (int i = 0; i < invalidated; i++) {
+      this.seed(tiles, this.changed[i], radius);
+    }
+    this.seed(tiles, idx, radius);
+    for (int dir = 0; dir < 4; dir++) {
+      int n = this.neighbor(idx, dir);
+      if (n >= 0) {
+        this.seed(tiles, n, radius);
+      }
+    }
+    while (this.heapSize > 0) {
+      long top = this.pop();
+      int d = (int) (top >>> 32);
+      int v = (int) top;
+      if (d >= this.dist[v]) {
+        continue;
+      }
+      if (this.dist[v] == UNREACHED) {
+        this.litCount++;
+      }
+      this.dist[v] = d;
+      this.mark(v);
+      if (d < radius) {
+        for (int dir = 0; dir < 4; dir++) {
+          int n = this.linked(tiles, v, dir);
+          if (n >= 0 && d + 1 < this.dist[n]) {
+            this.offer(d + 1, n);
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < this.changedSize; i++) {
+      this.marked[this.changed[i]] = false;
+    }
+    Metrics.record(Metrics.LIGHT_VISITS, tail + this.changedSize);
+  }
+
+  // Relights after the power station moved from index from to index
+  // to on an unchanged board. The old lit pieces are found by walking
+  // them from the old station and cleared, then the new ones are lit
+  // from the new station, so the cost follows how many pieces were lit
+  // before and after rather than the size of the board. Every piece
+  // lit either way is left in changed. Assumes dist matched the board
+  // before the move
+  void moved(TileMasks tiles, int from, int to, int radius) {
+    this.changedSize = 0;
+    if (radius < 0) {
+      return;
+    }
+
+    // every lit piece is joined to the old station by lit pieces
+    int tail = 0;
+    if (this.dist[from] != UNREACHED) {
+      this.queue[tail++] = from;
+      this.mark(from);
+    }
+    for (int head = 0; head < tail; head++) {
+      int v = this.queue[head];
+      for (int dir = 0; dir < 4; dir++) {
+        int n = this.linked(tiles, v, dir);
+        if (n >= 0 && this.dist[n] != UNREACHED && !this.marked[n]) {
+          this.queue[tail++] = n;
+          this.mark(n);
+        }
+      }
+    }
+    for (int i = 0; i < this.changedSize; i++) {
+      this.dist[this.changed[i]] = UNREACHED;
+    }
+
+    this.litCount = this.spread(tiles, to, radius);
+    for (int i = 0; i < this.litCount; i++) {
+      this.mark(this.queue[i]);
+    }
+    for (int i = 0; i < this.changedSize; i++) {
+      this.marked[this.changed[i]] = false;
+    }
+    Metrics.record(Metrics.LIGHT_VISITS, tail + this.litCount);
+  }
+
+  // Returns the index of the piece connected to the piece at index from,
+  // however far along the wires, that is closest on the board to the
+  // piece at index target, preferring the one fewest wires away on ties.
+  // This is where the power station at from can get to nearest target
+  int nearest(TileMasks tiles, int from, int target) {
+    int targetCol = target / this.height;
+    int targetRow = target % this.height;
+    int best = from;
+    int bestGap = Integer.MAX_VALUE;
+    int tail = 0;
+    this.queue[tail++] = from;
+    this.marked[from] = true;
+    for (int head = 0; head < tail && bestGap > 0; head++) {
+      int v = this.queue[head];
+      int gap = Math.abs(v / this.height - targetCol) + Math.abs(v % this.height - targetRow);
+      if (gap < bestGap) {
+        best = v;
+        bestGap = gap;
+      }
+      for (int dir = 0; dir < 4; dir++) {
+        int n = this.linked(tiles, v, dir);
+        if (n >= 0 && !this.marked[n]) {
+          this.marked[n] = true;
+          this.queue[tail++] = n;
+        }
+      }
+    }
+    for (int i = 0; i < tail; i++) {
+      this.marked[this.queue[i]] = false;
+    }
+    Metrics.record(Metrics.LIGHT_VISITS, tail);
+    return best;
+  }
+
+  // Does the piece at index v, d steps from the power station, have a
+  // connected neighbour d - 1 steps away?
+  boolean supported(TileMasks tiles, int v, int d) {
+    for (int dir = 0; dir < 4; dir++) {
+      int n = this.linked(tiles, v, dir);
+      if (n >= 0 && this.dist[n] == d - 1) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Queues the piece at index v with the distance offered by its
+  // closest connected neighbour, if that is within the radius
+  void seed(TileMasks tiles, int v, int radius) {
+    int best = UNREACHED;
+    for (int dir = 0; dir < 4; dir++) {
+      int n = this.linked(tiles, v, dir);
+      if (n >= 0 && this.dist[n] != UNREACHED && this.dist[n] + 1 < best) {
+        best = this.dist[n] + 1;
+      }
+    }
+    if (best <= radius && best < this.dist[v]) {
+      this.offer(best, v);
+    }
+  }
+
+  // Records that the distance of the piece at index v changed
+  void mark(int v) {
+    if (!this.marked[v]) {
+      this.marked[v] = true;
+      this.changed = this.push(this.changed, this.changedSize++, v);
+    }
+  }
+
+  // Returns the index of the neighbour of idx in the given direction,
+  // or -1 past the edge of the board
+  int neighbor(int idx, int dir) {
+    return Tiles.neighbor(idx, dir, this.width, this.height);
+  }
+
+  // Returns the index of the neighbour of idx in the given direction
+  // if the two pieces are connected to each other, or -1 otherwise
+  int linked(TileMasks tiles, int idx, int dir) {
+    int n = this.neighbor(idx, dir);
+    if (n >= 0 && Tiles.connected(tiles.mask(idx), dir, tiles.mask(n))) {
+      return n;
+    }
+    else {
+      return -1;
+    }
+  }
+
+  // Stores v at position i of arr, growing arr if it is full
+  int[] push(int[] arr, int i, int v) {
+    if (i == arr.length) {
+      arr = Arrays.copyOf(arr, Math.max(16, arr.length * 2));
+    }
+    arr[i] = v;
+    return arr;
+  }
+
+  // Adds the piece at index v with distance d to the repair heap
+  void offer(int d, int v) {
+    if (this.heapSize == this.heap.length) {
+      this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+    }
+    long key = ((long) d << 32) | v;
+    int i = this.heapSize++;
+    while (i > 0 && this.heap[(i - 1) / 2] > key) {
+      this.heap[i] = this.heap[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    this.heap[i] = key;
+  }
+
+  // Removes and returns the closest entry of the repair heap
+  long pop() {
+    long top = this.heap[0];
+    long last = this.heap[--this.heapSize];
+    int i = 0;
+    while (2 * i + 1 < this.heapSize) {
+      int child = 2 * i + 1;
+      if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child]) {
+        child++;
+      }
+      if (this.heap[child] >= last) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      i = child;
+    }
+    this.heap[i] = last;
+    return top;
+  }
+}
@@ -0,0 +1,72 @@
+package lightemall;
+
+import java.nio.ByteBuffer;
+
+// A board file mapped into memory by BoardFile.map. Masks are read from
+// the mapping on demand, so it can be lit or inspected without copying
+// the board; toCompact copies it into a CompactBoard to play or change it
+public class MappedBoard implements TileMasks {
+  ByteBuffer data;
+  public int width;
+  public int height;
+  public int powerCol;
+  public int powerRow;
+  public int radius;
+  // whether the file holds the spanning tree, and how many edges it has
+  boolean hasTree;
+  int treeSize;
+
+  MappedBoard(ByteBuffer data) {
+    this.data = data;
+    this.hasTree = (data.getShort(6) & BoardFile.HAS_TREE) != 0;
+    this.width = data.getInt(8);
+    this.height = data.getInt(12);
+    this.powerCol = data.getInt(16);
+    this.powerRow = data.getInt(20);
+    this.radius = data.getInt(24);
+    this.treeSize = data.getInt(28);
+  }
+
+  // Return how many bytes the packed masks take
+  int packedSize() {
+    return (int) (((long) this.width * this.height + 1) / 2);
+  }
+
+  // Return the connection mask of the tile at index idx
+  public int mask(int idx) {
+    int packed = this.data.get(BoardFile.HEADER + (idx >>> 1));
+    return (idx & 1) == 0 ? packed & 15 : (packed >>> 4) & 15;
+  }
+
+  // Return the EdgeList id of the i-th edge accepted into the spanning tree
+  int treeId(int i) {
+    return this.data.getInt(BoardFile.HEADER + this.packedSize() + 4 * i);
+  }
+
+  // Copies the board into a new CompactBoard, which is not lit yet
+  public CompactBoard toCompact() {
+    CompactBoard compact = new CompactBoard(this.width, this.height);
+    compact.powerCol = this.powerCol;
+    compact.powerRow = this.powerRow;
+    compact.radius = this.radius;
+    byte[] tiles = compact.tiles;
+    byte[] chunk = new byte[BoardFile.BUFFER];
+    int packed = this.packedSize();
+    for (int start = 0; start < packed; start += chunk.length) {
+      int length = Math.min(chunk.length, packed - start);
+      this.data.get(BoardFile.HEADER + start, chunk, 0, length);
+      // the last byte of a board with an odd number of tiles is
+      // unpacked separately
+      int pairs = start + length == packed && tiles.length % 2 == 1 ? length - 1 : length;
+      int idx = 2 * start;
+      for (int i = 0; i < pairs; i++) {
+        tiles[idx++] = (byte) (chunk[i] & 15);
+        tiles[idx++] = (byte) ((chunk[i] >>> 4) & 15);
+      }
+      if (pairs < length) {
+        tiles[idx] = (byte) (chunk[pairs] & 15);
+      }
+    }
+    return compact;
+  }
+}
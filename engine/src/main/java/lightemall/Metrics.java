@@ -0,0 +1,249 @@
+package lightemall;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.ObjectName;
+
+// Optional latency, allocation and work counters for the hot paths.
+// Every metric is a histogram with power-of-two buckets, so recording
+// never allocates. While disabled, begin and allocated return 0 and
+// end returns at once, so the probes cost one flag check each. Enable
+// with -Dlightemall.metrics=true, with Metrics.enabled, or over JMX.
+// With the property set, the metrics are published over JMX as soon as
+// the class loads, and -Dlightemall.metrics.dump=<ms> prints them as CSV
+// to standard output at that period
+public class Metrics {
+  // the metrics; times are in nanoseconds and visits in tiles
+  static final int GENERATE_EDGES = 0;
+  static final int GENERATE_SORT = 1;
+  static final int GENERATE_MST = 2;
+  static final int GENERATE_CONNECT = 3;
+  static final int GENERATE_RANDOMIZE = 4;
+  static final int GENERATE_LINK = 5;
+  static final int GENERATE_LIGHT = 6;
+  static final int CHECK_LIT = 7;
+  static final int MOUSE_CLICKED = 8;
+  static final int KEY_EVENT = 9;
+  static final int MAKE_SCENE = 10;
+  static final int LIGHT_VISITS = 11;
+  static final int INPUT_TO_LIT = 12;
+  static final String[] NAMES = { "generate.edges", "generate.sort", "generate.mst",
+      "generate.connect", "generate.randomize", "generate.link", "generate.light", "checkLit",
+      "onMouseClicked", "onKeyEvent", "makeScene", "light.visits", "server.inputToLit" };
+
+  // the layout of each metric's counters: the count, sum, maximum and
+  // allocated bytes, followed by one count per bucket, where bucket b
+  // holds values below 2^b
+  static final int COUNT = 0;
+  static final int SUM = 1;
+  static final int MAX = 2;
+  static final int ALLOCATED = 3;
+  static final int BUCKETS = 4;
+
+  public static volatile boolean enabled = Boolean.getBoolean("lightemall.metrics");
+  static final AtomicLongArray[] DATA = new AtomicLongArray[NAMES.length];
+  static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  // the timer started by start, if any
+  static ScheduledExecutorService dump;
+
+  static {
+    for (int m = 0; m < NAMES.length; m++) {
+      DATA[m] = new AtomicLongArray(BUCKETS + 64);
+    }
+    if (enabled) {
+      start();
+    }
+  }
+
+  // Publishes the metrics over JMX and, if lightemall.metrics.dump holds
+  // a period in milliseconds, prints them to standard output at that
+  // period. Calling it again starts no second timer
+  public static synchronized void start() {
+    try {
+      register();
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("cannot register lightemall:type=Metrics", e);
+    }
+    long period = Long.getLong("lightemall.metrics.dump", 0);
+    if (period > 0 && dump == null) {
+      dump = dumpEvery(period, System.out);
+    }
+  }
+
+  // Return the time to pass to end, or 0 when disabled
+  static long begin() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  // Return the bytes this thread has allocated so far, to pass to end,
+  // or 0 when disabled or unsupported
+  static long allocated() {
+    if (enabled && THREADS instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+    }
+    return 0;
+  }
+
+  // Records the time and allocation of metric since begin and allocated
+  // returned start and alloc, and returns a new start for the next phase
+  static long end(int metric, long start, long alloc) {
+    if (!enabled || start == 0) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    record(metric, now - start);
+    if (alloc != 0) {
+      DATA[metric].addAndGet(ALLOCATED, allocated() - alloc);
+    }
+    return now;
+  }
+
+  // Records one value of metric
+  static void record(int metric, long value) {
+    if (!enabled) {
+      return;
+    }
+    AtomicLongArray data = DATA[metric];
+    data.incrementAndGet(COUNT);
+    data.addAndGet(SUM, value);
+    long max = data.get(MAX);
+    while (value > max && !data.compareAndSet(MAX, max, value)) {
+      max = data.get(MAX);
+    }
+    data.incrementAndGet(BUCKETS + 64 - Long.numberOfLeadingZeros(Math.max(0, value)));
+  }
+
+  // Return the upper bound of the bucket holding the given fraction of
+  // the values of metric, or 0 if nothing was recorded
+  static long percentile(int metric, double fraction) {
+    AtomicLongArray data = DATA[metric];
+    long count = data.get(COUNT);
+    long seen = 0;
+    for (int b = 0; b < 64 && count > 0; b++) {
+      seen += data.get(BUCKETS + b);
+      if (seen >= Math.ceil(count * fraction)) {
+        return b == 0 ? 0 : Math.min(data.get(MAX), (1L << b) - 1);
+      }
+    }
+    return 0;
+  }
+
+  // Forgets everything recorded
+  static void reset() {
+    for (AtomicLongArray data : DATA) {
+      for (int i = 0; i < data.length(); i++) {
+        data.set(i, 0);
+      }
+    }
+  }
+
+  // Return every metric as CSV, one line each after a header
+  public static String csv() {
+    StringBuilder sb = new StringBuilder("metric,count,mean,p50,p99,max,allocated_bytes\n");
+    for (int m = 0; m < NAMES.length; m++) {
+      AtomicLongArray data = DATA[m];
+      long count = data.get(COUNT);
+      sb.append(NAMES[m]).append(',').append(count).append(',')
+          .append(count == 0 ? 0 : data.get(SUM) / count).append(',')
+          .append(percentile(m, 0.5)).append(',').append(percentile(m, 0.99)).append(',')
+          .append(data.get(MAX)).append(',').append(data.get(ALLOCATED)).append('\n');
+    }
+    return sb.toString();
+  }
+
+  // Prints csv to out every period milliseconds on a daemon thread,
+  // until the returned executor is shut down
+  public static ScheduledExecutorService dumpEvery(long period, PrintStream out) {
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "lightemall-metrics");
+      t.setDaemon(true);
+      return t;
+    });
+    timer.scheduleAtFixedRate(() -> out.print(csv()), period, period, TimeUnit.MILLISECONDS);
+    return timer;
+  }
+
+  // Publishes the metrics over JMX as lightemall:type=Metrics
+  public static void register() throws Exception {
+    ObjectName name = new ObjectName("lightemall:type=Metrics");
+    if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+    }
+  }
+
+  // The JMX view of the metrics
+  static class Bean implements MetricsMXBean {
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean on) {
+      enabled = on;
+    }
+
+    public String[] getNames() {
+      return NAMES.clone();
+    }
+
+    public long[] getCounts() {
+      return this.column(COUNT);
+    }
+
+    public long[] getMeans() {
+      long[] means = new long[NAMES.length];
+      for (int m = 0; m < NAMES.length; m++) {
+        long count = DATA[m].get(COUNT);
+        means[m] = count == 0 ? 0 : DATA[m].get(SUM) / count;
+      }
+      return means;
+    }
+
+    public long[] getMedians() {
+      return this.percentiles(0.5);
+    }
+
+    public long[] getP99s() {
+      return this.percentiles(0.99);
+    }
+
+    public long[] getMaxima() {
+      return this.column(MAX);
+    }
+
+    public long[] getAllocatedBytes() {
+      return this.column(ALLOCATED);
+    }
+
+    public String getCsv() {
+      return csv();
+    }
+
+    public void reset() {
+      Metrics.reset();
+    }
+
+    // Return the given counter of every metric
+    long[] column(int counter) {
+      long[] values = new long[NAMES.length];
+      for (int m = 0; m < NAMES.length; m++) {
+        values[m] = DATA[m].get(counter);
+      }
+      return values;
+    }
+
+    // Return the given percentile of every metric
+    long[] percentiles(double fraction) {
+      long[] values = new long[NAMES.length];
+      for (int m = 0; m < NAMES.length; m++) {
+        values[m] = percentile(m, fraction);
+      }
+      return values;
+    }
+  }
+}
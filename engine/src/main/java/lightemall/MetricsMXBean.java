@@ -0,0 +1,27 @@
+package lightemall;
+
+// The view of Metrics published over JMX. Every array lines up with
+// getNames
+public interface MetricsMXBean {
+  boolean isEnabled();
+
+  void setEnabled(boolean enabled);
+
+  String[] getNames();
+
+  long[] getCounts();
+
+  long[] getMeans();
+
+  long[] getMedians();
+
+  long[] getP99s();
+
+  long[] getMaxima();
+
+  long[] getAllocatedBytes();
+
+  String getCsv();
+
+  void reset();
+}
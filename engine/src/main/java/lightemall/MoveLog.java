@@ -0,0 +1,138 @@
+package lightemall;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// An append-only record of the moves made on a board, one varint per
+// move. A move is tile << 3 | turns for rotating the tile at index tile
+// by 1 to 3 quarter turns clockwise, or POWER | dir for moving the power
+// station one tile in Tiles direction dir. Only moves that happened are
+// recorded, so replaying them needs no checks. Moves are addressed by
+// the byte offset where they start. Tile indices must fit in 29 bits
+class MoveLog {
+  // the flag of a power station move
+  static final int POWER = 4;
+
+  byte[] data;
+  // how many bytes and moves have been recorded
+  int size;
+  long moves;
+  // the offset just past the move last read by moveAt
+  int next;
+
+  MoveLog() {
+    this.data = new byte[64];
+  }
+
+  // Return the move rotating the tile at index tile by turns quarter turns
+  static int rotation(int tile, int turns) {
+    return tile << 3 | (turns & 3);
+  }
+
+  // Return the move taking the power station one tile in direction dir
+  static int powerMove(int dir) {
+    return POWER | dir;
+  }
+
+  // Is move a power station move?
+  static boolean isPower(int move) {
+    return (move & POWER) != 0;
+  }
+
+  // Return the tile a rotation turns
+  static int tile(int move) {
+    return move >>> 3;
+  }
+
+  // Return how many quarter turns a rotation makes, or the direction of
+  // a power station move
+  static int amount(int move) {
+    return move & 3;
+  }
+
+  // Return the move that undoes move
+  static int inverse(int move) {
+    if (isPower(move)) {
+      return powerMove(Tiles.opposite(amount(move)));
+    }
+    else {
+      return rotation(tile(move), 4 - amount(move));
+    }
+  }
+
+  // Records move and returns the offset it was recorded at
+  int append(int move) {
+    if (this.data.length - this.size < 5) {
+      this.data = Arrays.copyOf(this.data, this.data.length * 2);
+    }
+    int offset = this.size;
+    while ((move & ~0x7f) != 0) {
+      this.data[this.size++] = (byte) (move & 0x7f | 0x80);
+      move >>>= 7;
+    }
+    this.data[this.size++] = (byte) move;
+    this.moves++;
+    return offset;
+  }
+
+  // Return the move recorded at offset, leaving the offset of the move
+  // after it in next
+  int moveAt(int offset) {
+    int move = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = this.data[offset++];
+      move |= (b & 0x7f) << shift;
+      shift += 7;
+    } while (b < 0);
+    this.next = offset;
+    return move;
+  }
+
+  // Applies the moves recorded from offset from up to offset to to
+  // board, without lighting it, and returns how many there were. The
+  // caller relights once afterwards
+  long replay(CompactBoard board, int from, int to) {
+    long count = 0;
+    int power = board.index(board.powerCol, board.powerRow);
+    for (int offset = from; offset < to; offset = this.next) {
+      int move = this.moveAt(offset);
+      if (isPower(move)) {
+        power = board.neighbor(power, amount(move));
+      }
+      else {
+        board.setMask(tile(move), Tiles.rotate(board.mask(tile(move)), amount(move)));
+      }
+      count++;
+    }
+    board.powerCol = power / board.height;
+    board.powerRow = power % board.height;
+    return count;
+  }
+
+  // Writes the recorded moves to out
+  void write(OutputStream out) throws IOException {
+    out.write(this.data, 0, this.size);
+  }
+
+  // Reads moves written by write from in, appending them to this log
+  void read(InputStream in) throws IOException {
+    byte[] bytes = in.readAllBytes();
+    if (bytes.length > 0 && bytes[bytes.length - 1] < 0) {
+      throw new IOException("move log ends in the middle of a move");
+    }
+    if (this.data.length - this.size < bytes.length) {
+      this.data = Arrays.copyOf(this.data, this.size + bytes.length + 64);
+    }
+    System.arraycopy(bytes, 0, this.data, this.size, bytes.length);
+    int end = this.size + bytes.length;
+    for (int offset = this.size; offset < end; offset = this.next) {
+      this.moveAt(offset);
+      this.moves++;
+    }
+    this.size = end;
+  }
+}
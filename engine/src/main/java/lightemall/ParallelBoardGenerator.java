@@ -0,0 +1,124 @@
+package lightemall;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Generates CompactBoards using every worker of a ForkJoinPool. Edge
+// weights and tile rotations come from one generator per fixed-size
+// chunk, seeded from the board seed and the chunk number, so a seed
+// always gives the same board whatever the parallelism. These boards
+// differ from the ones a sequential Random gives LightEmAll. Closing
+// it shuts the pool down if the generator made the pool itself
+class ParallelBoardGenerator implements AutoCloseable {
+  // how many edge slots or tiles share one random generator
+  static final int CHUNK = 1 << 16;
+  // how many sorted edges are filtered at a time while building the tree
+  static final int BLOCK = 1 << 14;
+
+  ForkJoinPool pool;
+  // whether pool was made here, and so is shut down by close
+  boolean ownsPool;
+
+  ParallelBoardGenerator(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  ParallelBoardGenerator(int parallelism) {
+    this(new ForkJoinPool(parallelism));
+    this.ownsPool = true;
+  }
+
+  // Generates a width by height board from the given seed
+  CompactBoard generate(int width, int height, long seed) {
+    CompactBoard compact = new CompactBoard(width, height);
+    long[] keys = this.pool.submit(() -> this.edges(width, height, seed)).join();
+    this.pool.submit(() -> Arrays.parallelSort(keys)).join();
+    this.spanningTree(compact, keys);
+    this.pool.submit(() -> this.randomize(compact, seed)).join();
+    compact.relight(new LightingEngine(width, height));
+    return compact;
+  }
+
+  // Return the random weight of every edge packed as EdgeList keys. Edge
+  // id i sits at slot i; slots that would leave the board hold
+  // Long.MAX_VALUE so they sort last
+  long[] edges(int width, int height, long seed) {
+    int tiles = width * height;
+    long[] keys = new long[2 * tiles];
+    int chunks = (keys.length + CHUNK - 1) / CHUNK;
+    IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      SplittableRandom rand = new SplittableRandom(mix(seed, chunk));
+      int end = Math.min(keys.length, (chunk + 1) * CHUNK);
+      for (int id = chunk * CHUNK; id < end; id++) {
+        int from = id >>> 1;
+        boolean exists = (id & 1) == 1 ? from < tiles - height : from % height < height - 1;
+        int weight = rand.nextInt();
+        keys[id] = exists ? EdgeList.pack(weight, id) : Long.MAX_VALUE;
+      }
+    });
+    return keys;
+  }
+
+  // Builds the minimum spanning tree over the sorted keys into compact
+  // with a blocked filter-Kruskal: each block of edges is first filtered
+  // in parallel, dropping edges whose tiles are already joined, and the
+  // few survivors are then joined in order. Finds only compress paths
+  // while filtering, and every write there points a tile at one of its
+  // own ancestors, so the shared DisjointSet stays valid
+  void spanningTree(CompactBoard compact, long[] keys) {
+    int tiles = compact.width * compact.height;
+    DisjointSet sets = new DisjointSet(tiles);
+    boolean[] alive = new boolean[BLOCK];
+    int accepted = 0;
+    for (int start = 0; start < keys.length && accepted < tiles - 1; start += BLOCK) {
+      int begin = start;
+      int end = Math.min(keys.length, start + BLOCK);
+      this.pool.submit(() -> IntStream.range(begin, end).parallel().forEach(i -> {
+        int id = (int) keys[i];
+        alive[i - begin] = keys[i] != Long.MAX_VALUE
+            && sets.find(id >>> 1) != sets.find(this.to(compact, id));
+      })).join();
+      for (int i = begin; i < end && accepted < tiles - 1; i++) {
+        int id = (int) keys[i];
+        if (alive[i - begin] && sets.union(id >>> 1, this.to(compact, id))) {
+          compact.connect(id);
+          accepted++;
+        }
+      }
+    }
+  }
+
+  // Return the index of the right or bottom tile of the edge with the given id
+  int to(CompactBoard compact, int id) {
+    return (id & 1) == 1 ? (id >>> 1) + compact.height : (id >>> 1) + 1;
+  }
+
+  // Rotates every tile by a random number of quarter turns
+  void randomize(CompactBoard compact, long seed) {
+    int tiles = compact.tiles.length;
+    int chunks = (tiles + CHUNK - 1) / CHUNK;
+    IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      SplittableRandom rand = new SplittableRandom(mix(~seed, chunk));
+      int end = Math.min(tiles, (chunk + 1) * CHUNK);
+      for (int idx = chunk * CHUNK; idx < end; idx++) {
+        compact.setMask(idx, Tiles.rotate(compact.mask(idx), rand.nextInt(4)));
+      }
+    });
+  }
+
+  public void close() {
+    if (this.ownsPool) {
+      this.pool.shutdown();
+    }
+  }
+
+  // Return the seed of the generator for the given chunk
+  static long mix(long seed, int chunk) {
+    long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,211 @@
+package lightemall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// A HeadlessGame that records every move in a MoveLog, so a session can
+// be undone, redone and replayed. Undo and redo are moves too: undoing
+// appends the inverse move and redoing appends the move again, so the
+// log stays append-only and replaying all of it always gives the
+// current board. Every snapshotEvery moves a copy of the masks is kept,
+// packed two to a byte, so the board after any move can be rebuilt
+// from the nearest snapshot before it instead of from the start. The
+// interval is at least the number of tiles, and every move takes at
+// least a byte of log, so snapshots never take more than about half
+// as much memory as the log
+class RecordedGame {
+  // the fewest moves between snapshots, however small the board
+  static final int SNAPSHOT_EVERY = 4096;
+
+  HeadlessGame game;
+  MoveLog log;
+  // the offsets of the moves that undo and redo would take back or
+  // make again, most recent last
+  int[] undo;
+  int undoSize;
+  int[] redo;
+  int redoSize;
+  // copies of the board, the first one from before any move
+  ArrayList<Snapshot> snapshots;
+  // how many moves apart the snapshots are
+  int snapshotEvery;
+
+  RecordedGame(CompactBoard board) {
+    this.game = new HeadlessGame(board);
+    this.log = new MoveLog();
+    this.undo = new int[16];
+    this.redo = new int[16];
+    this.snapshots = new ArrayList<Snapshot>();
+    this.snapshots.add(new Snapshot(board, 0, 0));
+    this.snapshotEvery = Math.max(SNAPSHOT_EVERY, board.tiles.length);
+  }
+
+  // Rotates the tile at col and row a quarter turn clockwise, returning
+  // false if it is off the board
+  boolean rotate(int col, int row) {
+    if (!this.game.rotate(col, row)) {
+      return false;
+    }
+    this.made(MoveLog.rotation(this.game.board.index(col, row), 1));
+    return true;
+  }
+
+  // Moves the power station one tile in direction dir if it is
+  // connected that way, returning whether it moved
+  boolean movePower(int dir) {
+    if (!this.game.movePower(dir)) {
+      return false;
+    }
+    this.made(MoveLog.powerMove(dir));
+    return true;
+  }
+
+  // Records a new move, which can no longer be followed by a redo
+  void made(int move) {
+    this.undo = this.push(this.undo, this.undoSize++, this.record(move));
+    this.redoSize = 0;
+  }
+
+  // Takes back the last move not yet taken back, returning false if
+  // there is none
+  boolean undo() {
+    if (this.undoSize == 0) {
+      return false;
+    }
+    int offset = this.undo[--this.undoSize];
+    int inverse = MoveLog.inverse(this.log.moveAt(offset));
+    this.apply(inverse);
+    this.record(inverse);
+    this.redo = this.push(this.redo, this.redoSize++, offset);
+    return true;
+  }
+
+  // Makes again the last move taken back, returning false if there is none
+  boolean redo() {
+    if (this.redoSize == 0) {
+      return false;
+    }
+    int move = this.log.moveAt(this.redo[--this.redoSize]);
+    this.apply(move);
+    this.undo = this.push(this.undo, this.undoSize++, this.record(move));
+    return true;
+  }
+
+  // Makes a move on the game, lighting it as the move is made
+  void apply(int move) {
+    CompactBoard board = this.game.board;
+    if (MoveLog.isPower(move)) {
+      this.game.movePower(MoveLog.amount(move));
+    }
+    else {
+      int tile = MoveLog.tile(move);
+      this.game.rotate(tile / board.height, tile % board.height, MoveLog.amount(move));
+    }
+  }
+
+  // Appends move to the log, taking a snapshot when one is due, and
+  // returns the offset it was appended at
+  int record(int move) {
+    int offset = this.log.append(move);
+    if (this.log.moves % this.snapshotEvery == 0) {
+      this.snapshots.add(new Snapshot(this.game.board, this.log.moves, this.log.size));
+    }
+    return offset;
+  }
+
+  // Rebuilds the board as it was after the first moves moves of the log,
+  // starting from the latest snapshot at or before it, replaying the
+  // rest in one batch and lighting once at the end
+  CompactBoard boardAfter(long moves) {
+    moves = Math.min(moves, this.log.moves);
+    int i = (int) Math.min(moves / this.snapshotEvery, this.snapshots.size() - 1);
+    Snapshot snapshot = this.snapshots.get(i);
+    CompactBoard board = snapshot.board();
+    int end = snapshot.offset;
+    for (long m = snapshot.moves; m < moves; m++) {
+      this.log.moveAt(end);
+      end = this.log.next;
+    }
+    this.log.replay(board, snapshot.offset, end);
+    board.relight(new LightingEngine(board.width, board.height));
+    return board;
+  }
+
+  // Replays every move of log on start, which is changed in place, in
+  // batches of batch moves, lighting once per batch rather than once per
+  // move, and returns the game it leaves
+  static HeadlessGame replay(CompactBoard start, MoveLog log, int batch) {
+    HeadlessGame game = new HeadlessGame(start);
+    int from = 0;
+    while (from < log.size) {
+      int to = from;
+      for (int i = 0; i < batch && to < log.size; i++) {
+        log.moveAt(to);
+        to = log.next;
+      }
+      log.replay(game.board, from, to);
+      game.relight();
+      from = to;
+    }
+    return game;
+  }
+
+  // Return how many bytes of masks the snapshots hold
+  long snapshotBytes() {
+    long bytes = 0;
+    for (Snapshot snapshot : this.snapshots) {
+      bytes += snapshot.masks.length;
+    }
+    return bytes;
+  }
+
+  // Stores v at position i of arr, growing arr if it is full
+  int[] push(int[] arr, int i, int v) {
+    if (i == arr.length) {
+      arr = Arrays.copyOf(arr, arr.length * 2);
+    }
+    arr[i] = v;
+    return arr;
+  }
+
+  // A copy of the masks and power station of a board after some number
+  // of moves, and the offset in the log just after the last of them.
+  // The masks are packed two to a byte as in a board file, the even
+  // index in the low four bits; lit bits are not kept
+  static class Snapshot {
+    int width;
+    int height;
+    byte[] masks;
+    int powerCol;
+    int powerRow;
+    int radius;
+    long moves;
+    int offset;
+
+    Snapshot(CompactBoard board, long moves, int offset) {
+      this.width = board.width;
+      this.height = board.height;
+      this.masks = new byte[(board.tiles.length + 1) / 2];
+      for (int idx = 0; idx < board.tiles.length; idx++) {
+        this.masks[idx >> 1] |= (byte) (board.mask(idx) << ((idx & 1) * 4));
+      }
+      this.powerCol = board.powerCol;
+      this.powerRow = board.powerRow;
+      this.radius = board.radius;
+      this.moves = moves;
+      this.offset = offset;
+    }
+
+    // Return a new, unlit board holding this snapshot
+    CompactBoard board() {
+      CompactBoard board = new CompactBoard(this.width, this.height);
+      for (int idx = 0; idx < board.tiles.length; idx++) {
+        board.tiles[idx] = (byte) ((this.masks[idx >> 1] >>> ((idx & 1) * 4)) & 15);
+      }
+      board.powerCol = this.powerCol;
+      board.powerRow = this.powerRow;
+      board.radius = this.radius;
+      return board;
+    }
+  }
+}
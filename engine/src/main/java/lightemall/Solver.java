@@ -0,0 +1,676 @@
+package lightemall;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Finds how far to turn every tile of a board so that all of its wires
+// join into one network, which lights the whole board when the radius
+// allows it. Every tile keeps the set of quarter turns still possible
+// for it as a four bit domain. Wires must meet in pairs and may not
+// leave the board, so narrowing one tile narrows its neighbours; that
+// propagation settles most tiles. Turns that lead straight to a
+// contradiction are then ruled out by trying them, and what is left is
+// found by backtracking, with every change recorded on a trail so it
+// can be undone. A network that closes on itself before reaching every
+// tile is rejected as soon as it appears, and so is a loop when the
+// board has exactly enough wires for a tree.
+//
+// The unsettled tiles come in small regions, but a loop can join
+// regions far apart, and backtracking in board order would then undo
+// every region between them. So the next tile to guess is one next to
+// what the last guess changed, which finishes a region before starting
+// another, and otherwise one that could close a loop, which tries a
+// region as soon as another has left it little room. A run that still
+// has to undo too many guesses restarts with the turns tried in
+// another order, and after budget backtracks in all the search gives
+// up rather than running for minutes
+public class Solver {
+  // what search found: turns for every tile, that there are none, or
+  // nothing before the budget ran out
+  public static final int SOLVED = 1;
+  public static final int NONE = 0;
+  public static final int UNKNOWN = -1;
+  // the backtracks a search may make before it gives up
+  public static final int BUDGET = 1 << 20;
+  // the backtracks a run may make before the search restarts, times a
+  // term of the Luby sequence
+  static final int RUN = 64;
+
+  // MAY[mask][domain] and MUST[mask][domain] are the directions some
+  // and every turn in domain connects a tile with the given mask
+  static final byte[][] MAY = new byte[16][16];
+  static final byte[][] MUST = new byte[16][16];
+  // HAS[mask][dir] is the set of turns of a tile with the given mask
+  // that connect it in direction dir
+  static final byte[][] HAS = new byte[16][4];
+
+  static {
+    for (int mask = 0; mask < 16; mask++) {
+      for (int domain = 0; domain < 16; domain++) {
+        int may = 0;
+        int must = 15;
+        for (int turns = 0; turns < 4; turns++) {
+          if ((domain & (1 << turns)) != 0) {
+            may |= Tiles.rotate(mask, turns);
+            must &= Tiles.rotate(mask, turns);
+          }
+        }
+        MAY[mask][domain] = (byte) may;
+        MUST[mask][domain] = (byte) (domain == 0 ? 0 : must);
+      }
+      for (int dir = 0; dir < 4; dir++) {
+        for (int turns = 0; turns < 4; turns++) {
+          if ((Tiles.rotate(mask, turns) & (1 << dir)) != 0) {
+            HAS[mask][dir] |= 1 << turns;
+          }
+        }
+      }
+    }
+  }
+
+  // the kinds of change recorded on the trail
+  static final int DOMAIN = 0;
+  static final int PARENT = 1;
+  static final int SIZE = 2;
+  static final int OPEN = 3;
+  static final int JOINED = 4;
+  static final int ENDS = 5;
+  static final int NEXT = 6;
+
+  int width;
+  int height;
+  int tiles;
+  // the masks of the tiles as given
+  byte[] base;
+  // the turns still possible for every tile
+  byte[] domain;
+  // the directions in which every tile is already joined to its neighbour
+  byte[] joined;
+  // how many wires every tile may still have that are not yet joined
+  int[] ends;
+  // a union-find without path compression over the joined tiles, so
+  // that unions can be undone; open totals ends over every network
+  int[] parent;
+  int[] size;
+  int[] open;
+  // whether the wires can only form a tree, so that any loop is wrong
+  boolean tree;
+  // the changes made so far, as idx * 8 + kind and the previous value
+  int[] trailKey;
+  int[] trailValue;
+  int trailSize;
+  // tiles whose domain changed and whose neighbours must be checked
+  int[] queue;
+  boolean[] queued;
+  int queueSize;
+  // the unsettled tiles waiting to be probed
+  int[] probes;
+  boolean[] probing;
+  int probeSize;
+  // unsettled tiles next to what recent guesses changed, most recent
+  // last, to guess next; tiles settled since are skipped
+  int[] frontier;
+  int frontierSize;
+  // every network keeps a cycle through next of its tiles and of the
+  // tiles next to them that were unsettled before the first guess,
+  // with node idx for tile idx itself and nodes from tiles on for the
+  // neighbours, whose tiles are in border; merging two networks splices
+  // their cycles
+  int[] next;
+  int[] border;
+  // tiles a merge may have left able to close a loop, most recent
+  // last, to guess once the frontier is empty; probes merge networks
+  // only to undo it again, so while trying they add nothing
+  int[] risks;
+  int riskSize;
+  boolean trying;
+  // decides the order of turns in every run
+  Random random = new Random(0);
+  // the networks next to the tile being checked by closesLoop
+  int[] roots = new int[5];
+  // where the search for an unsettled tile in board order resumes when
+  // the frontier is empty; every tile before it is settled
+  int scan;
+  // how many guesses had to be undone, and how many may be
+  public int backtracks;
+  public int budget;
+  // the quarter turns that solve every tile, once solve succeeds
+  public int[] turns;
+
+  public Solver(CompactBoard board) {
+    this.width = board.width;
+    this.height = board.height;
+    this.tiles = board.width * board.height;
+    this.base = new byte[this.tiles];
+    this.domain = new byte[this.tiles];
+    this.joined = new byte[this.tiles];
+    this.parent = new int[this.tiles];
+    this.size = new int[this.tiles];
+    this.open = new int[this.tiles];
+    this.ends = new int[this.tiles];
+    this.trailKey = new int[64];
+    this.trailValue = new int[64];
+    this.queue = new int[this.tiles];
+    this.queued = new boolean[this.tiles];
+    this.probes = new int[64];
+    this.probing = new boolean[this.tiles];
+    this.frontier = new int[64];
+    this.risks = new int[64];
+    this.next = new int[this.tiles];
+    this.budget = BUDGET;
+    long ends = 0;
+    for (int idx = 0; idx < this.tiles; idx++) {
+      int mask = board.mask(idx);
+      this.base[idx] = (byte) mask;
+      ends += Integer.bitCount(mask);
+      this.parent[idx] = idx;
+      this.next[idx] = idx;
+      this.size[idx] = 1;
+      // drop turns that repeat an earlier one or point off the board
+      int allowed = 0;
+      for (int t = 0; t < 4; t++) {
+        int turned = Tiles.rotate(mask, t);
+        boolean repeat = false;
+        for (int earlier = 0; earlier < t; earlier++) {
+          repeat = repeat || Tiles.rotate(mask, earlier) == turned;
+        }
+        boolean inside = true;
+        for (int dir = 0; dir < 4; dir++) {
+          inside = inside && ((turned & (1 << dir)) == 0
+              || Tiles.neighbor(idx, dir, this.width, this.height) >= 0);
+        }
+        if (!repeat && inside) {
+          allowed |= 1 << t;
+        }
+      }
+      this.domain[idx] = (byte) allowed;
+      this.ends[idx] = Integer.bitCount(MAY[mask][allowed]);
+      this.open[idx] = this.ends[idx];
+    }
+    this.tree = ends == 2L * (this.tiles - 1);
+  }
+
+  // Searches for turns that join every tile into one network, leaving
+  // them in turns and returning true, or returns false if there are none
+  // or the search gave up
+  public boolean solve() {
+    return this.search() == SOLVED;
+  }
+
+  // Searches for turns that join every tile into one network, leaving
+  // them in turns, and returns SOLVED, NONE if there are none, or
+  // UNKNOWN if more than budget guesses had to be undone. Runs seed
+  // their choices from random, so the same board always goes the same
+  // way
+  public int search() {
+    for (int idx = 0; idx < this.tiles; idx++) {
+      if (this.domain[idx] == 0) {
+        return NONE;
+      }
+      this.enqueue(idx);
+    }
+    if (!this.propagate() || !this.probe(-1)) {
+      return NONE;
+    }
+    this.borders();
+
+    // restart with the turns tried in a different order whenever a run
+    // has to undo more guesses than the Luby sequence allows it
+    int root = this.trailSize;
+    for (int run = 1; true; run++) {
+      int result = this.run(RUN * luby(run));
+      if (result != UNKNOWN || this.backtracks > this.budget) {
+        return result;
+      }
+      this.undo(root);
+    }
+  }
+
+  // Searches from the settled tiles for turns for the rest, as search
+  // does, but gives up with UNKNOWN after limit backtracks
+  int run(long limit) {
+    this.frontierSize = 0;
+    this.riskSize = 0;
+    this.scan = 0;
+    long left = Math.min(limit, (long) this.budget - this.backtracks + 1);
+
+    // every guess keeps its tile, the turns left to try, the trail size
+    // to undo to and where the board order scan was
+    int[] guessTile = new int[16];
+    int[] guessLeft = new int[16];
+    int[] guessMark = new int[16];
+    int[] guessScan = new int[16];
+    int depth = 0;
+    while (true) {
+      int next = this.pick();
+      boolean ok;
+      if (next < 0) {
+        if (this.size[this.find(0)] == this.tiles) {
+          this.turns = new int[this.tiles];
+          for (int idx = 0; idx < this.tiles; idx++) {
+            this.turns[idx] = Integer.numberOfTrailingZeros(this.domain[idx]);
+          }
+          return SOLVED;
+        }
+        ok = false;
+      }
+      else {
+        if (depth == guessTile.length) {
+          guessTile = Arrays.copyOf(guessTile, depth * 2);
+          guessLeft = Arrays.copyOf(guessLeft, depth * 2);
+          guessMark = Arrays.copyOf(guessMark, depth * 2);
+          guessScan = Arrays.copyOf(guessScan, depth * 2);
+        }
+        guessTile[depth] = next;
+        guessLeft[depth] = this.domain[next];
+        guessMark[depth] = this.trailSize;
+        guessScan[depth] = this.scan;
+        depth++;
+        ok = false;
+      }
+
+      // try the next turn of the deepest guess, backing out of guesses
+      // that have run out of turns
+      while (!ok) {
+        if (depth == 0) {
+          return NONE;
+        }
+        int top = depth - 1;
+        this.undo(guessMark[top]);
+        this.scan = guessScan[top];
+        if (guessLeft[top] == 0) {
+          depth--;
+          this.backtracks++;
+          if (--left < 0) {
+            return UNKNOWN;
+          }
+          continue;
+        }
+        int choice = this.anyOf(guessLeft[top]);
+        guessLeft[top] &= ~choice;
+        ok = this.restrict(guessTile[top], choice) && this.propagate()
+            && this.probe(guessMark[top]);
+        if (ok) {
+          this.widen(guessMark[top]);
+        }
+      }
+    }
+  }
+
+  // Return one of the turns in options, chosen at random
+  int anyOf(int options) {
+    int skip = this.random.nextInt(Integer.bitCount(options));
+    for (int i = 0; i < skip; i++) {
+      options &= options - 1;
+    }
+    return options & -options;
+  }
+
+  // Return the ith term of the Luby sequence 1 1 2 1 1 2 4 1 1 2 ...
+  static long luby(int i) {
+    int k = 1;
+    while ((1 << k) - 1 < i) {
+      k++;
+    }
+    if (i == (1 << k) - 1) {
+      return 1L << (k - 1);
+    }
+    return luby(i - (1 << (k - 1)) + 1);
+  }
+
+  // Return an unsettled tile to guess next: the latest one added to the
+  // frontier, or else one that could close a loop, or else the first in
+  // board order, or -1 if every tile is settled
+  int pick() {
+    while (this.frontierSize > 0) {
+      int idx = this.frontier[--this.frontierSize];
+      if (Integer.bitCount(this.domain[idx]) > 1) {
+        return idx;
+      }
+    }
+    while (this.riskSize > 0) {
+      int idx = this.risks[--this.riskSize];
+      if (Integer.bitCount(this.domain[idx]) > 1 && this.closesLoop(idx)) {
+        return idx;
+      }
+    }
+    while (this.scan < this.tiles && Integer.bitCount(this.domain[this.scan]) == 1) {
+      this.scan++;
+    }
+    return this.scan < this.tiles ? this.scan : -1;
+  }
+
+  // Could the unsettled tile at idx reach two neighbours in the same
+  // network?
+  boolean closesLoop(int idx) {
+    int may = MAY[this.base[idx]][this.domain[idx]] & ~this.joined[idx];
+    int[] roots = this.roots;
+    int count = 0;
+    if (this.joined[idx] != 0) {
+      roots[count++] = this.find(idx);
+    }
+    for (int dir = 0; dir < 4; dir++) {
+      int n = Tiles.neighbor(idx, dir, this.width, this.height);
+      if ((may & (1 << dir)) != 0 && n >= 0) {
+        int root = this.find(n);
+        for (int i = 0; i < count; i++) {
+          if (roots[i] == root) {
+            return true;
+          }
+        }
+        roots[count++] = root;
+      }
+    }
+    return false;
+  }
+
+  // Adds a node for every neighbour of every unsettled tile to the cycle
+  // of the network holding that neighbour
+  void borders() {
+    int count = 0;
+    for (int idx = 0; idx < this.tiles; idx++) {
+      if (Integer.bitCount(this.domain[idx]) > 1) {
+        count += 4;
+      }
+    }
+    this.next = Arrays.copyOf(this.next, this.tiles + count);
+    this.border = new int[count];
+    int node = this.tiles;
+    for (int idx = 0; idx < this.tiles; idx++) {
+      if (Integer.bitCount(this.domain[idx]) > 1) {
+        for (int dir = 0; dir < 4; dir++) {
+          int n = Tiles.neighbor(idx, dir, this.width, this.height);
+          if (n >= 0) {
+            int root = this.find(n);
+            this.border[node - this.tiles] = idx;
+            this.next[node] = this.next[root];
+            this.next[root] = node;
+            node++;
+          }
+        }
+      }
+    }
+  }
+
+  // Splices the cycle of network b into that of network a, which it has
+  // just joined. Unless trying, the unsettled tiles in or next to b are
+  // added to risks first, as only they can now reach a and b both
+  void splice(int a, int b) {
+    if (!this.trying && this.border != null) {
+      int node = b;
+      do {
+        int idx = node < this.tiles ? node : this.border[node - this.tiles];
+        if (Integer.bitCount(this.domain[idx]) > 1) {
+          if (this.riskSize == this.risks.length) {
+            this.risks = Arrays.copyOf(this.risks, this.riskSize * 2);
+          }
+          this.risks[this.riskSize++] = idx;
+        }
+        node = this.next[node];
+      } while (node != b);
+    }
+    int after = this.next[a];
+    this.set(NEXT, a, this.next[b]);
+    this.set(NEXT, b, after);
+  }
+
+  // Adds the unsettled neighbours of every tile narrowed since the trail
+  // was from long to the frontier
+  void widen(int from) {
+    for (int i = from; i < this.trailSize; i++) {
+      if ((this.trailKey[i] & 7) == DOMAIN) {
+        int idx = this.trailKey[i] >>> 3;
+        for (int dir = 0; dir < 4; dir++) {
+          int n = Tiles.neighbor(idx, dir, this.width, this.height);
+          if (n >= 0 && Integer.bitCount(this.domain[n]) > 1) {
+            if (this.frontierSize == this.frontier.length) {
+              this.frontier = Arrays.copyOf(this.frontier, this.frontierSize * 2);
+            }
+            this.frontier[this.frontierSize++] = n;
+          }
+        }
+      }
+    }
+  }
+
+  // Tries every turn still open to the unsettled tiles changed since
+  // the trail was from long, or to every tile if from is negative, and
+  // their neighbours, ruling out the turns that lead straight to a
+  // contradiction. Tiles narrowed that way are tried again in turn.
+  // Returns false if a tile runs out of turns
+  boolean probe(int from) {
+    this.probeSize = 0;
+    if (from < 0) {
+      for (int idx = 0; idx < this.tiles; idx++) {
+        this.addProbe(idx);
+      }
+      from = this.trailSize;
+    }
+    this.collect(from);
+    boolean ok = true;
+    for (int i = 0; ok && i < this.probeSize; i++) {
+      int idx = this.probes[i];
+      this.probing[idx] = false;
+      int options = this.domain[idx];
+      while (ok && Integer.bitCount(options) > 1) {
+        int choice = options & -options;
+        options &= ~choice;
+        int mark = this.trailSize;
+        this.trying = true;
+        boolean fits = this.restrict(idx, choice) && this.propagate();
+        this.trying = false;
+        this.undo(mark);
+        if (!fits) {
+          ok = this.restrict(idx, ~choice & 15) && this.propagate();
+          this.collect(mark);
+        }
+      }
+    }
+    for (int i = 0; i < this.probeSize; i++) {
+      this.probing[this.probes[i]] = false;
+    }
+    return ok;
+  }
+
+  // Adds every tile narrowed since the trail was from long, and its
+  // neighbours, to the tiles waiting to be probed
+  void collect(int from) {
+    for (int i = from; i < this.trailSize; i++) {
+      if ((this.trailKey[i] & 7) == DOMAIN) {
+        int idx = this.trailKey[i] >>> 3;
+        this.addProbe(idx);
+        for (int dir = 0; dir < 4; dir++) {
+          int n = Tiles.neighbor(idx, dir, this.width, this.height);
+          if (n >= 0) {
+            this.addProbe(n);
+          }
+        }
+      }
+    }
+  }
+
+  // Adds the tile at idx to the tiles waiting to be probed if it is
+  // unsettled and not already waiting
+  void addProbe(int idx) {
+    if (!this.probing[idx] && Integer.bitCount(this.domain[idx]) > 1) {
+      if (this.probeSize == this.probes.length) {
+        this.probes = Arrays.copyOf(this.probes, this.probeSize * 2);
+      }
+      this.probing[idx] = true;
+      this.probes[this.probeSize++] = idx;
+    }
+  }
+
+  // Narrows the domain of the tile at idx to the turns in allowed,
+  // returning false if none are left
+  boolean restrict(int idx, int allowed) {
+    int narrowed = this.domain[idx] & allowed;
+    if (narrowed == this.domain[idx]) {
+      return true;
+    }
+    if (narrowed == 0) {
+      return false;
+    }
+    this.set(DOMAIN, idx, narrowed);
+    this.enqueue(idx);
+    return true;
+  }
+
+  // Checks the neighbours of every queued tile until nothing changes,
+  // returning false on a contradiction
+  boolean propagate() {
+    boolean ok = true;
+    while (this.queueSize > 0) {
+      int v = this.queue[--this.queueSize];
+      this.queued[v] = false;
+      ok = ok && this.check(v);
+    }
+    return ok;
+  }
+
+  // Narrows the neighbours of the tile at v to agree with the wires v
+  // must and cannot have, and joins it to the neighbours it must reach
+  boolean check(int v) {
+    int mask = this.base[v];
+    int may = MAY[mask][this.domain[v]];
+    int must = MUST[mask][this.domain[v]];
+    int loose = Integer.bitCount(may & ~this.joined[v]);
+    if (loose != this.ends[v]) {
+      int root = this.find(v);
+      this.set(OPEN, root, this.open[root] - this.ends[v] + loose);
+      this.set(ENDS, v, loose);
+    }
+    for (int dir = 0; dir < 4; dir++) {
+      int n = Tiles.neighbor(v, dir, this.width, this.height);
+      if (n < 0) {
+        continue;
+      }
+      int opp = Tiles.opposite(dir);
+      int nMask = this.base[n];
+      if ((must & (1 << dir)) != 0) {
+        if (!this.restrict(n, HAS[nMask][opp])) {
+          return false;
+        }
+        if ((this.joined[v] & (1 << dir)) == 0 && !this.join(v, dir, n, opp)) {
+          return false;
+        }
+      }
+      else if ((may & (1 << dir)) == 0) {
+        if (!this.restrict(n, ~HAS[nMask][opp] & 15)) {
+          return false;
+        }
+      }
+    }
+    return this.notClosed(this.find(v));
+  }
+
+  // Joins the tile v to its neighbour n, which must connect back to it,
+  // returning false if that closes a loop on a board that must be a tree
+  boolean join(int v, int dir, int n, int opp) {
+    this.set(JOINED, v, this.joined[v] | (1 << dir));
+    this.set(JOINED, n, this.joined[n] | (1 << opp));
+    this.set(ENDS, v, this.ends[v] - 1);
+    this.set(ENDS, n, this.ends[n] - 1);
+    int a = this.find(v);
+    int b = this.find(n);
+    if (a == b) {
+      this.set(OPEN, a, this.open[a] - 2);
+      return !this.tree && this.notClosed(a);
+    }
+    if (this.size[a] < this.size[b]) {
+      int swap = a;
+      a = b;
+      b = swap;
+    }
+    this.set(PARENT, b, a);
+    this.set(SIZE, a, this.size[a] + this.size[b]);
+    this.set(OPEN, a, this.open[a] + this.open[b] - 2);
+    this.splice(a, b);
+    return this.notClosed(a);
+  }
+
+  // Is the network at root still open to the rest of the board, or
+  // already the whole board?
+  boolean notClosed(int root) {
+    return this.open[root] > 0 || this.size[root] == this.tiles;
+  }
+
+  // Return the root of the network containing idx
+  int find(int idx) {
+    while (this.parent[idx] != idx) {
+      idx = this.parent[idx];
+    }
+    return idx;
+  }
+
+  // Queues the tile at idx to have its neighbours checked
+  void enqueue(int idx) {
+    if (!this.queued[idx]) {
+      this.queued[idx] = true;
+      this.queue[this.queueSize++] = idx;
+    }
+  }
+
+  // Changes one value, recording the old one on the trail
+  void set(int kind, int idx, int value) {
+    if (this.trailSize == this.trailKey.length) {
+      this.trailKey = Arrays.copyOf(this.trailKey, this.trailSize * 2);
+      this.trailValue = Arrays.copyOf(this.trailValue, this.trailSize * 2);
+    }
+    this.trailKey[this.trailSize] = idx * 8 + kind;
+    if (kind == DOMAIN) {
+      this.trailValue[this.trailSize++] = this.domain[idx];
+      this.domain[idx] = (byte) value;
+    }
+    else if (kind == JOINED) {
+      this.trailValue[this.trailSize++] = this.joined[idx];
+      this.joined[idx] = (byte) value;
+    }
+    else {
+      int[] values = this.values(kind);
+      this.trailValue[this.trailSize++] = values[idx];
+      values[idx] = value;
+    }
+  }
+
+  // Return the int array holding values of the given kind
+  int[] values(int kind) {
+    if (kind == PARENT) {
+      return this.parent;
+    }
+    else if (kind == SIZE) {
+      return this.size;
+    }
+    else if (kind == OPEN) {
+      return this.open;
+    }
+    else if (kind == NEXT) {
+      return this.next;
+    }
+    else {
+      return this.ends;
+    }
+  }
+
+  // Undoes every change after the trail was mark long, and empties the queue
+  void undo(int mark) {
+    while (this.trailSize > mark) {
+      this.trailSize--;
+      int kind = this.trailKey[this.trailSize] & 7;
+      int idx = this.trailKey[this.trailSize] >>> 3;
+      int value = this.trailValue[this.trailSize];
+      if (kind == DOMAIN) {
+        this.domain[idx] = (byte) value;
+      }
+      else if (kind == JOINED) {
+        this.joined[idx] = (byte) value;
+      }
+      else {
+        this.values(kind)[idx] = value;
+      }
+    }
+    while (this.queueSize > 0) {
+      this.queued[this.queue[--this.queueSize]] = false;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package lightemall;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+// Generates a board one column at a time with Eller's algorithm, so
+// memory grows with the height of the board but not its width. Only
+// the current column is kept, with a union-find over its rows telling
+// which of them the columns so far already join. Within a column,
+// neighbouring rows that are not yet joined are joined at random; then
+// every group of joined rows carries on into the next column through
+// at least one random right edge, and rows that do not carry on start
+// new groups there. The last column joins everything that is left, so
+// the wires always form one spanning tree. Every tile is then given a
+// random rotation and the column goes to a TileSink. The same seed
+// always gives the same board, but not the board LightEmAll makes, and
+// the trees are not drawn uniformly: Eller's algorithm favours some
+// shapes over others
+public class StreamingGenerator {
+  int width;
+  int height;
+  long seed;
+
+  public StreamingGenerator(int width, int height, long seed) {
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+  }
+
+  // Generates the board into a board file at path, with the power
+  // station in the top left corner and the default radius
+  public void write(Path path) throws IOException {
+    try (BoardFile.Writer out = new BoardFile.Writer(path, this.width, this.height, 0, 0,
+        CompactBoard.DEFAULT_RADIUS, -1)) {
+      this.generate(out);
+    }
+  }
+
+  // Generates the board a column at a time into sink
+  public void generate(TileSink sink) throws IOException {
+    SplittableRandom rand = new SplittableRandom(this.seed);
+    int h = this.height;
+    byte[] masks = new byte[h];
+    DisjointSet sets = new DisjointSet(h);
+    // whether each row's tile has a wire to the left, from the last column
+    boolean[] fromLeft = new boolean[h];
+    // how many rows of each group are still to be decided, whether the
+    // group has carried on to the right yet, and the row that stands for
+    // the group in the next column
+    int[] left = new int[h];
+    boolean[] carried = new boolean[h];
+    int[] next = new int[h];
+    int[] parent = new int[h];
+    byte[] rank = new byte[h];
+    // the group of every row, found once per column
+    int[] roots = new int[h];
+
+    for (int col = 0; col < this.width; col++) {
+      boolean last = col == this.width - 1;
+      for (int row = 0; row < h; row++) {
+        masks[row] = (byte) (fromLeft[row] ? Tiles.LEFT_BIT : 0);
+      }
+
+      // join neighbouring rows that are not joined yet, all of them in
+      // the last column
+      for (int row = 0; row + 1 < h; row++) {
+        if ((last || rand.nextBoolean()) && sets.union(row, row + 1)) {
+          masks[row] |= Tiles.BOTTOM_BIT;
+          masks[row + 1] |= Tiles.TOP_BIT;
+        }
+      }
+
+      // carry every group on to the right at least once, choosing the
+      // rows at random and forcing the last one if none was chosen
+      if (!last) {
+        for (int row = 0; row < h; row++) {
+          int root = sets.find(row);
+          roots[row] = root;
+          left[root]++;
+          carried[root] = false;
+          next[root] = -1;
+        }
+        for (int row = 0; row < h; row++) {
+          int root = roots[row];
+          left[root]--;
+          fromLeft[row] = rand.nextBoolean() || (left[root] == 0 && !carried[root]);
+          if (fromLeft[row]) {
+            carried[root] = true;
+            masks[row] |= Tiles.RIGHT_BIT;
+          }
+        }
+
+        // the next column starts with the carried rows of a group joined
+        // to its first carried row, and every other row on its own
+        for (int row = 0; row < h; row++) {
+          if (fromLeft[row] && next[roots[row]] < 0) {
+            next[roots[row]] = row;
+          }
+        }
+        for (int row = 0; row < h; row++) {
+          parent[row] = fromLeft[row] ? next[roots[row]] : row;
+          rank[row] = 0;
+        }
+        for (int row = 0; row < h; row++) {
+          if (parent[row] != row) {
+            rank[parent[row]] = 1;
+          }
+        }
+        sets.set(parent, rank);
+      }
+
+      for (int row = 0; row < h; row++) {
+        masks[row] = (byte) Tiles.rotate(masks[row], rand.nextInt(4));
+      }
+      sink.column(col, masks);
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package lightemall;
+
+// A board of width * height tiles, indexed by col * height + row,
+// whose connections can be read as Tiles masks
+public interface TileMasks {
+  // Return the connection mask of the tile at index idx
+  int mask(int idx);
+}
@@ -0,0 +1,11 @@
+package lightemall;
+
+import java.io.IOException;
+
+// Receives a board one column at a time, in order, as a
+// StreamingGenerator produces it
+public interface TileSink {
+  // Takes the connection masks of column col, from the top row down.
+  // The array is reused for the next column once this returns
+  void column(int col, byte[] masks) throws IOException;
+}
@@ -0,0 +1,11 @@
+package lightemall;
+
+// A board that can say how every tile looks: its connection mask,
+// whether it is lit and how far inside the radius it was lit
+interface TileStates extends TileMasks {
+  // Is the tile at index idx lit?
+  boolean isLit(int idx);
+
+  // Return the lit radius of the tile at index idx, as in GamePiece.litRadius
+  int litRadius(int idx);
+}
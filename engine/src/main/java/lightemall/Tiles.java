@@ -0,0 +1,84 @@
+package lightemall;
+
+import java.util.Random;
+
+// Connection masks for tiles. Bit d of a mask is set when the tile is
+// connected in direction d, where the directions run clockwise from the
+// top, so that rotating a tile is a rotation of its mask
+public class Tiles {
+  // the directions
+  public static final int TOP = 0;
+  public static final int RIGHT = 1;
+  public static final int BOTTOM = 2;
+  public static final int LEFT = 3;
+
+  // the bit of each direction in a mask
+  public static final int TOP_BIT = 1 << TOP;
+  public static final int RIGHT_BIT = 1 << RIGHT;
+  public static final int BOTTOM_BIT = 1 << BOTTOM;
+  public static final int LEFT_BIT = 1 << LEFT;
+
+  // Return the direction opposite to dir
+  static int opposite(int dir) {
+    return (dir + 2) & 3;
+  }
+
+  // Return the index of the neighbour of the tile at idx in direction
+  // dir on a width by height board indexed by col * height + row, or -1
+  // past the edge of the board
+  static int neighbor(int idx, int dir, int width, int height) {
+    if (dir == TOP) {
+      return idx % height > 0 ? idx - 1 : -1;
+    }
+    else if (dir == RIGHT) {
+      return idx < (width - 1) * height ? idx + height : -1;
+    }
+    else if (dir == BOTTOM) {
+      return idx % height < height - 1 ? idx + 1 : -1;
+    }
+    else {
+      return idx >= height ? idx - height : -1;
+    }
+  }
+
+  // ROTATIONS[turns][mask] is mask turned clockwise by the given number
+  // of quarter turns, as GamePiece.rotate does
+  static final byte[][] ROTATIONS = new byte[4][16];
+
+  static {
+    for (int mask = 0; mask < 16; mask++) {
+      int turned = mask;
+      for (int turns = 0; turns < 4; turns++) {
+        ROTATIONS[turns][mask] = (byte) turned;
+        turned = ((turned << 1) | (turned >>> 3)) & 15;
+      }
+    }
+  }
+
+  // Rotates a mask a quarter turn clockwise
+  public static int rotate(int mask) {
+    return ROTATIONS[1][mask];
+  }
+
+  // Rotates a mask clockwise by turns quarter turns, with any turns
+  public static int rotate(int mask, int turns) {
+    return ROTATIONS[turns & 3][mask];
+  }
+
+  // Are a tile with the given mask and its neighbour in direction dir,
+  // which has neighborMask, connected to each other?
+  static boolean connected(int mask, int dir, int neighborMask) {
+    return (mask & ROTATIONS[2][neighborMask] & (1 << dir)) != 0;
+  }
+
+  // Return how many quarter turns LightEmAll.randomizeBoard gives a
+  // piece. It draws a new bound before every turn, so the draws are
+  // repeated here one by one to keep boards identical for a seed
+  static int randomTurns(Random rand) {
+    int turns = 0;
+    while (turns < rand.nextInt(4)) {
+      turns++;
+    }
+    return turns;
+  }
+}
@@ -0,0 +1,107 @@
+package lightemall;
+
+// The part of a board shown on screen. Tiles are scale pixels wide on
+// screen, and (offsetX, offsetY) is the point of the board, in those
+// screen pixels, drawn at the top-left corner of the window. Only tiles
+// inside the window are drawn, so drawing costs as much as the window
+// and not the whole board
+class Viewport {
+  // below this many pixels per tile, tiles are drawn as blocks of
+  // colour instead of full images
+  static final int DETAIL_SCALE = 12;
+
+  // the size of the window, in pixels
+  int screenWidth;
+  int screenHeight;
+  // the width and height of one tile on screen, in pixels
+  int scale;
+  int offsetX;
+  int offsetY;
+  // whether the view moved or zoomed since it was last drawn
+  boolean moved;
+
+  Viewport(int screenWidth, int screenHeight, int scale) {
+    this.screenWidth = screenWidth;
+    this.screenHeight = screenHeight;
+    this.scale = Math.max(1, scale);
+    this.moved = true;
+  }
+
+  // Are tiles big enough to be drawn as full images?
+  boolean detailed() {
+    return this.scale >= DETAIL_SCALE;
+  }
+
+  // Return the first and last columns and rows at least partly in the
+  // window of a width by height board
+  int firstCol() {
+    return Math.max(0, this.offsetX / this.scale);
+  }
+
+  int lastCol(int width) {
+    return Math.min(width - 1, (this.offsetX + this.screenWidth - 1) / this.scale);
+  }
+
+  int firstRow() {
+    return Math.max(0, this.offsetY / this.scale);
+  }
+
+  int lastRow(int height) {
+    return Math.min(height - 1, (this.offsetY + this.screenHeight - 1) / this.scale);
+  }
+
+  // Return the screen position of the left or top edge of a column or row
+  int screenX(int col) {
+    return col * this.scale - this.offsetX;
+  }
+
+  int screenY(int row) {
+    return row * this.scale - this.offsetY;
+  }
+
+  // Return the index of the tile of a width by height board strictly
+  // inside which the screen position (x, y) falls, or -1 if it is off
+  // the board or on a tile edge
+  int tileAt(int x, int y, int width, int height) {
+    int boardX = x + this.offsetX;
+    int boardY = y + this.offsetY;
+    if (x <= 0 || y <= 0 || boardX % this.scale == 0 || boardY % this.scale == 0) {
+      return -1;
+    }
+    int col = boardX / this.scale;
+    int row = boardY / this.scale;
+    if (col >= width || row >= height) {
+      return -1;
+    }
+    return col * height + row;
+  }
+
+  // Moves the view by (dx, dy) screen pixels, staying on a width by
+  // height board
+  void scroll(int dx, int dy, int width, int height) {
+    this.offsetX += dx;
+    this.offsetY += dy;
+    this.clamp(width, height);
+  }
+
+  // Changes the tile size on screen, keeping the middle of the window
+  // over the same point of a width by height board
+  void zoom(int scale, int width, int height) {
+    scale = Math.max(1, scale);
+    long midX = this.offsetX + this.screenWidth / 2;
+    long midY = this.offsetY + this.screenHeight / 2;
+    this.offsetX = (int) (midX * scale / this.scale - this.screenWidth / 2);
+    this.offsetY = (int) (midY * scale / this.scale - this.screenHeight / 2);
+    this.scale = scale;
+    this.clamp(width, height);
+  }
+
+  // Keeps the window over a width by height board
+  void clamp(int width, int height) {
+    long maxX = Math.max(0, (long) width * this.scale - this.screenWidth);
+    long maxY = Math.max(0, (long) height * this.scale - this.screenHeight);
+    this.offsetX = (int) Math.max(0, Math.min(maxX, this.offsetX));
+    this.offsetY = (int) Math.max(0, Math.min(maxY, this.offsetY));
+    this.moved = true;
+  }
+}
@@ -0,0 +1,73 @@
+package lightemall;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javalib.impworld.WorldScene;
+import javalib.worldimages.Posn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times the game's own hot paths on square boards of every size and
+// radius: checkLit, onMouseClicked, and makeScene from scratch and
+// after one click. A radius of 2147483647 lights as far as the wires
+// go. Run with
+//   java -cp game/target/benchmarks.jar:lib/javalib.jar:lib/tester.jar \
+//     org.openjdk.jmh.Main GameBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+  @Param({ "8", "64", "256", "1000", "2000" })
+  public int size;
+  @Param({ "8", "64", "2147483647" })
+  public int radius;
+
+  LightEmAll world;
+  // where the next click lands
+  Random clicks;
+
+  @Setup
+  public void setup() {
+    this.world = new LightEmAll(this.size, this.size, new Random(1));
+    this.world.radius = this.radius;
+    this.world.checkLit();
+    this.clicks = new Random(2);
+  }
+
+  @Benchmark
+  public int checkLit() {
+    this.world.checkLit();
+    return this.world.lighting.litCount;
+  }
+
+  @Benchmark
+  public int onMouseClicked() {
+    this.world.onMouseClicked(new Posn(this.clicks.nextInt(this.size) * this.world.tileSize + 1,
+        this.clicks.nextInt(this.size) * this.world.tileSize + 1));
+    return this.world.lighting.litCount;
+  }
+
+  @Benchmark
+  public WorldScene makeScene() {
+    this.world.dirty.markAll();
+    return this.world.makeScene();
+  }
+
+  @Benchmark
+  public WorldScene makeSceneDirty() {
+    this.world.onMouseClicked(new Posn(this.world.tileSize + 1, 1));
+    return this.world.makeScene();
+  }
+}
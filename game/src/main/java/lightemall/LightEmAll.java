@@ -0,0 +1,2023 @@
+package lightemall;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.management.ObjectName;
+import tester.*;
+import javalib.impworld.*;
+import java.awt.Color;
+import javalib.worldimages.*;
+
+class LightEmAll extends World implements TileStates {
+  // a list of columns of GamePieces,
+  // i.e., represents the board in column-major order
+  ArrayList<ArrayList<GamePiece>> board;
+  // a list of all nodes
+  ArrayList<GamePiece> nodes;
+  // a list of edges of the minimum spanning tree
+  ArrayList<Edge> mst;
+  // the width and height of the board
+  int width;
+  int height;
+  // the current location of the power station,
+  // as well as its effective radius
+  int powerRow;
+  int powerCol;
+  int radius;
+  Random rand;
+  // lights the board from the power station
+  LightingEngine lighting;
+  // how generation sorts its packed edges, or null to build and sort
+  // Edge objects with heapSort
+  EdgeSort edgeSort;
+  // the width and height of every tile on screen, in pixels
+  int tileSize;
+  // the pieces that look different since the scene was last drawn
+  DirtyTiles dirty;
+  // the part of the board shown in the window, or null to show all of it
+  Viewport view;
+  // the pixels of the scene when tiles are drawn as images, their tile
+  // size and how many tiles have been painted into them
+  ComputedPixelImage detail;
+  int sceneTileSize;
+  int scenePlaced;
+  // the pixels of the scene when the view is too far out for tile images
+  ComputedPixelImage overview;
+  // whether a rotation repairs the lighting around the rotated piece
+  // instead of relighting the whole board
+  boolean incremental;
+  // the clicks and key moves waiting for the next tick, or null to
+  // apply each one as it happens
+  InputQueue input;
+
+  // Default constructor
+  LightEmAll(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.board = new ArrayList<ArrayList<GamePiece>>();
+    this.nodes = new ArrayList<GamePiece>();
+    this.rand = new Random();
+    this.radius = CompactBoard.DEFAULT_RADIUS;
+    this.edgeSort = EdgeSort.HEAP;
+    this.incremental = true;
+    this.tileSize = 60;
+    this.generateBoard();
+  }
+
+  // Constructor with given Random seed
+  LightEmAll(int width, int height, Random rand) {
+    this.width = width;
+    this.height = height;
+    this.board = new ArrayList<ArrayList<GamePiece>>();
+    this.nodes = new ArrayList<GamePiece>();
+    this.rand = rand;
+    this.radius = CompactBoard.DEFAULT_RADIUS;
+    this.edgeSort = EdgeSort.HEAP;
+    this.incremental = true;
+    this.tileSize = 60;
+    generateBoard();
+  }
+
+  // Constructor with given Random seed and edge sort, or null to
+  // generate with Edge objects
+  LightEmAll(int width, int height, Random rand, EdgeSort edgeSort) {
+    this.width = width;
+    this.height = height;
+    this.board = new ArrayList<ArrayList<GamePiece>>();
+    this.nodes = new ArrayList<GamePiece>();
+    this.rand = rand;
+    this.radius = CompactBoard.DEFAULT_RADIUS;
+    this.edgeSort = edgeSort;
+    this.incremental = true;
+    this.tileSize = 60;
+    generateBoard();
+  }
+
+  // Constructor showing a compact board, with a piece for every tile
+  LightEmAll(CompactBoard compact) {
+    this.width = compact.width;
+    this.height = compact.height;
+    this.board = new ArrayList<ArrayList<GamePiece>>();
+    this.nodes = new ArrayList<GamePiece>();
+    this.mst = new ArrayList<Edge>();
+    this.rand = new Random();
+    this.radius = compact.radius;
+    this.powerCol = compact.powerCol;
+    this.powerRow = compact.powerRow;
+    this.edgeSort = EdgeSort.HEAP;
+    this.incremental = true;
+    this.tileSize = 60;
+    for (int col = 0; col < this.width; col++) {
+      this.board.add(new ArrayList<GamePiece>());
+      for (int row = 0; row < this.height; row++) {
+        GamePiece p = new GamePiece(row, col, false, false, false, false,
+            col == this.powerCol && row == this.powerRow);
+        p.setMask(compact.mask(compact.index(col, row)));
+        this.board.get(col).add(p);
+        this.nodes.add(p);
+      }
+    }
+    this.linkPieces();
+    this.lighting = new LightingEngine(this.width, this.height);
+    this.dirty = new DirtyTiles(this.width * this.height);
+    this.checkLit();
+  }
+
+  // Return this board in the compact one byte per tile form
+  CompactBoard compact() {
+    CompactBoard compact = new CompactBoard(this.width, this.height);
+    for (int i = 0; i < this.nodes.size(); i++) {
+      compact.setMask(i, this.nodes.get(i).mask());
+      compact.setLit(i, this.nodes.get(i).isLit);
+    }
+    compact.powerCol = this.powerCol;
+    compact.powerRow = this.powerRow;
+    compact.radius = this.radius;
+    return compact;
+  }
+
+  // Return the connection mask of the piece at index idx of nodes
+  public int mask(int idx) {
+    return this.nodes.get(idx).mask();
+  }
+
+  // Is the piece at index idx of nodes lit?
+  public boolean isLit(int idx) {
+    return this.nodes.get(idx).isLit;
+  }
+
+  // Return the lit radius of the piece at index idx of nodes
+  public int litRadius(int idx) {
+    return this.nodes.get(idx).litRadius;
+  }
+
+  // Return an encoder of deltas for a remote copy of this board, fed
+  // with the pieces marked dirty from now on. Each call adds another
+  // encoder, which is chained in front of the ones before it until
+  // unremote drops it
+  DeltaEncoder remote(boolean rle) {
+    DeltaEncoder encoder = new DeltaEncoder(this.nodes.size(), rle);
+    encoder.pending.also = this.dirty.also;
+    this.dirty.also = encoder.pending;
+    return encoder;
+  }
+
+  // Stop feeding encoder, once its remote copy is gone
+  void unremote(DeltaEncoder encoder) {
+    this.dirty.unlink(encoder.pending);
+  }
+
+  // Return the delta since encoder last published this board
+  byte[] delta(DeltaEncoder encoder) {
+    return encoder.diff(this, this.powerCol * this.height + this.powerRow);
+  }
+
+  // Generate the board
+  void generateBoard() {
+    boolean ps;
+    for (int col = 0; col < this.width; col++) {
+      this.board.add(new ArrayList<GamePiece>());
+      for (int row = 0; row < this.height; row++) {
+        ps = false;
+        if (col == 0 && row == 0) {
+          ps = true;
+          this.powerCol = 0;
+          this.powerRow = 0;
+        }
+        GamePiece p = new GamePiece(row, col, false, false, false, false, ps);
+        this.board.get(col).add(p);
+        this.nodes.add(p);
+      }
+    }
+
+    // each phase is timed when Metrics are enabled
+    long start = Metrics.begin();
+    long alloc = Metrics.allocated();
+    if (this.edgeSort == null) {
+      ArrayList<Edge> allEdges = getEdges();
+      start = Metrics.end(Metrics.GENERATE_EDGES, start, alloc);
+      alloc = Metrics.allocated();
+      this.heapSort(allEdges);
+      start = Metrics.end(Metrics.GENERATE_SORT, start, alloc);
+      alloc = Metrics.allocated();
+      this.kruskals(allEdges);
+    }
+    else {
+      EdgeList allEdges = new EdgeList(this.width, this.height, this.rand);
+      start = Metrics.end(Metrics.GENERATE_EDGES, start, alloc);
+      alloc = Metrics.allocated();
+      allEdges.sort(this.edgeSort);
+      start = Metrics.end(Metrics.GENERATE_SORT, start, alloc);
+      alloc = Metrics.allocated();
+      this.mst = this.toEdges(allEdges, allEdges.spanningTree());
+    }
+    start = Metrics.end(Metrics.GENERATE_MST, start, alloc);
+    alloc = Metrics.allocated();
+    this.connectPieces();
+    start = Metrics.end(Metrics.GENERATE_CONNECT, start, alloc);
+    alloc = Metrics.allocated();
+    this.randomizeBoard();
+    start = Metrics.end(Metrics.GENERATE_RANDOMIZE, start, alloc);
+    alloc = Metrics.allocated();
+    this.linkPieces();
+    start = Metrics.end(Metrics.GENERATE_LINK, start, alloc);
+    alloc = Metrics.allocated();
+    this.lighting = new LightingEngine(this.width, this.height);
+    this.dirty = new DirtyTiles(this.width * this.height);
+    this.checkLit();
+    Metrics.end(Metrics.GENERATE_LIGHT, start, alloc);
+
+  }
+
+  // Return an ArrayList of all possible edges
+  ArrayList<Edge> getEdges() {
+    ArrayList<Edge> allEdges = new ArrayList<Edge>();
+    GamePiece from;
+    GamePiece to;
+    for (int col = 0; col < this.width; col++) {
+      for (int row = 0; row < this.height; row++) {
+        if (this.height - 1 != row) { // not the bottom row
+          from = getPiece(col, row);
+          to = getPiece(col, row + 1);
+          allEdges.add(new Edge(from, to, this.rand.nextInt()));
+        }
+        if (this.width - col > 1) { // not the rightmost column
+          from = getPiece(col, row);
+          to = getPiece(col + 1, row);
+          allEdges.add(new Edge(from, to, this.rand.nextInt()));
+        }
+
+      }
+    }
+    return allEdges;
+  }
+
+  // Return the Edges at the given positions of a packed edge list
+  ArrayList<Edge> toEdges(EdgeList edges, int[] positions) {
+    ArrayList<Edge> result = new ArrayList<Edge>(positions.length);
+    for (int i : positions) {
+      int id = edges.id(i);
+      result.add(new Edge(this.nodes.get(edges.from(id)), this.nodes.get(edges.to(id)),
+          edges.weight(i)));
+    }
+    return result;
+  }
+
+  // Sort the given ArrayList<Edge> using heaps
+  public void heapSort(ArrayList<Edge> edges) {
+    for (int i = (edges.size() - 1) / 2; i >= 0; i--) {
+      this.downheap(edges, i, edges.size());
+    }
+    for (int i = (edges.size() - 1); i >= 0; i--) {
+      this.removeMax(edges, i);
+    }
+  }
+
+  // Recursively swap invalid parent/children positions until
+  // the heap is valid
+  void downheap(ArrayList<Edge> edges, int idx, int heapSize) {
+    int leftIdx = 2 * idx + 1;
+    int rightIdx = 2 * idx + 2;
+
+    if (leftIdx >= heapSize) {
+      // neither left nor right exist
+    }
+    // only left exists
+    else if (rightIdx >= heapSize) {
+      if (edges.get(idx).weight < edges.get(leftIdx).weight) {
+        Edge prevEdge = edges.get(idx);
+        edges.set(idx, edges.get(leftIdx));
+        edges.set(leftIdx, prevEdge);
+
+        this.downheap(edges, leftIdx, heapSize);
+      }
+    }
+
+    // both left and right exist
+    else {
+      if (edges.get(idx).weight < edges.get(leftIdx).weight
+          || edges.get(idx).weight < edges.get(rightIdx).weight) {
+        int biggestIdx;
+        if (edges.get(leftIdx).weight < edges.get(rightIdx).weight) {
+          biggestIdx = rightIdx;
+        }
+        else {
+          biggestIdx = leftIdx;
+        }
+        Edge prevEdge = edges.get(idx);
+        edges.set(idx, edges.get(biggestIdx));
+        edges.set(biggestIdx, prevEdge);
+        downheap(edges, biggestIdx, heapSize);
+      }
+    }
+  }
+
+  // Removes the max from the heap
+  void removeMax(ArrayList<Edge> edges, int idx) {
+    Edge prevEdge = edges.get(0);
+    edges.set(0, edges.get(idx));
+    edges.set(idx, prevEdge);
+    this.downheap(edges, 0, idx);
+  }
+
+  // Generates the minimum spanning tree given a list
+  // of edges sorted from least to greatest by weight
+  void kruskals(ArrayList<Edge> edges) {
+    DisjointSet representatives = new DisjointSet(this.nodes.size());
+    ArrayList<Edge> edgesInTree = new ArrayList<Edge>(Math.max(0, this.nodes.size() - 1));
+
+    // walk the sorted edges once, stopping as soon as the tree is complete
+    for (int i = 0; i < edges.size() && edgesInTree.size() < this.nodes.size() - 1; i++) {
+      Edge currentEdge = edges.get(i);
+      if (representatives.union(this.indexOf(currentEdge.fromNode),
+          this.indexOf(currentEdge.toNode))) {
+        edgesInTree.add(currentEdge);
+      }
+    }
+    this.mst = edgesInTree;
+  }
+
+  // Return the index of the given piece in nodes
+  int indexOf(GamePiece p) {
+    return p.col * this.height + p.row;
+  }
+
+  // Finds the representative for the given node in a map of
+  // representatives, as used before DisjointSet
+  GamePiece find(HashMap<GamePiece, GamePiece> representatives, GamePiece node) {
+    if (representatives.get(node).equals(node)) {
+      return node;
+    }
+    else {
+      return find(representatives, representatives.get(node));
+    }
+  }
+
+  // Links the representatives of the two given nodes
+  void union(HashMap<GamePiece, GamePiece> representatives, GamePiece node1, GamePiece node2) {
+    representatives.put(representatives.get(node1), representatives.get(node2));
+  }
+
+  // Connect all GamePieces using the minimum spanning tree
+  void connectPieces() {
+    // Edges are constructed from left to right
+    // and top to bottom, so the fromNode will
+    // always be to the left or top of the toNode
+
+    for (Edge e : this.mst) {
+      if (e.fromNode.col == e.toNode.col) {
+        e.fromNode.bottom = true;
+        e.toNode.top = true;
+      }
+      if (e.fromNode.row == e.toNode.row) {
+        e.fromNode.right = true;
+        e.toNode.left = true;
+      }
+    }
+  }
+
+  // Draw the world. Only the tiles in the current view are drawn, into
+  // one image of the whole window. The image is kept while the view
+  // stays put, and only the pieces marked dirty since then are painted
+  // over again, so building a frame follows the change and painting it
+  // is always a single image
+  public WorldScene makeScene() {
+    long start = Metrics.begin();
+    long alloc = Metrics.allocated();
+    Viewport v = this.currentView();
+    WorldScene ws = v.detailed() ? this.makeDetail(v) : this.makeOverview(v);
+    Metrics.end(Metrics.MAKE_SCENE, start, alloc);
+    return ws;
+  }
+
+  // Draws the view with the pixels of a tile image for every visible
+  // piece, repainting only the dirty pieces while the view stays put
+  WorldScene makeDetail(Viewport v) {
+    if (this.detail == null || this.dirty.all || v.moved || this.sceneTileSize != v.scale) {
+      this.detail = new ComputedPixelImage(v.screenWidth, v.screenHeight);
+      this.sceneTileSize = v.scale;
+      this.scenePlaced = 0;
+      for (int col = v.firstCol(); col <= v.lastCol(this.width); col++) {
+        for (int row = v.firstRow(); row <= v.lastRow(this.height); row++) {
+          this.placePiece(v, col * this.height + row);
+        }
+      }
+    }
+    else {
+      for (int i = 0; i < this.dirty.size; i++) {
+        this.placePiece(v, this.dirty.list[i]);
+      }
+    }
+    this.dirty.clear();
+    v.moved = false;
+    this.overview = null;
+    WorldScene ws = new WorldScene(v.screenWidth, v.screenHeight);
+    ws.placeImageXY(this.detail, v.screenWidth / 2, v.screenHeight / 2);
+    return ws;
+  }
+
+  // Return the view to draw: this.view, or the whole board at tileSize
+  Viewport currentView() {
+    if (this.view != null) {
+      return this.view;
+    }
+    Viewport whole = new Viewport(this.width * this.tileSize, this.height * this.tileSize,
+        this.tileSize);
+    whole.moved = false;
+    return whole;
+  }
+
+  // Paints the piece at index idx into the detail pixels if it is in view
+  void placePiece(Viewport v, int idx) {
+    GamePiece p = this.nodes.get(idx);
+    if (p.col >= v.firstCol() && p.col <= v.lastCol(this.width) && p.row >= v.firstRow()
+        && p.row <= v.lastRow(this.height)) {
+      Color[] pixels = TileImageCache.forSize(v.scale).pixels(p.mask(), p.isLit,
+          p.litRadius - this.radius, p.powerStation);
+      int x0 = v.screenX(p.col);
+      int y0 = v.screenY(p.row);
+      int right = Math.min(v.screenWidth, x0 + v.scale);
+      int bottom = Math.min(v.screenHeight, y0 + v.scale);
+      for (int y = Math.max(0, y0); y < bottom; y++) {
+        for (int x = Math.max(0, x0); x < right; x++) {
+          this.detail.setPixel(x, y, pixels[(y - y0) * v.scale + (x - x0)]);
+        }
+      }
+      this.scenePlaced++;
+    }
+  }
+
+  // Draws the view with one block of colour per tile into a single
+  // image, repainting only the dirty pieces while the view stays put
+  WorldScene makeOverview(Viewport v) {
+    if (this.overview == null || this.dirty.all || v.moved) {
+      this.overview = new ComputedPixelImage(v.screenWidth, v.screenHeight);
+      for (int col = v.firstCol(); col <= v.lastCol(this.width); col++) {
+        for (int row = v.firstRow(); row <= v.lastRow(this.height); row++) {
+          this.paintPiece(v, col * this.height + row);
+        }
+      }
+    }
+    else {
+      for (int i = 0; i < this.dirty.size; i++) {
+        this.paintPiece(v, this.dirty.list[i]);
+      }
+    }
+    this.dirty.clear();
+    v.moved = false;
+    this.detail = null;
+    WorldScene ws = new WorldScene(v.screenWidth, v.screenHeight);
+    ws.placeImageXY(this.overview, v.screenWidth / 2, v.screenHeight / 2);
+    return ws;
+  }
+
+  // Fills the pixels of the piece at index idx in the overview
+  void paintPiece(Viewport v, int idx) {
+    GamePiece p = this.nodes.get(idx);
+    Color c = TileImageCache.FILL;
+    if (p.powerStation) {
+      c = Color.CYAN;
+    }
+    else if (p.isLit) {
+      c = TileImageCache.SHADES[Math.max(0,
+          Math.min(TileImageCache.MAX_SHADE, p.litRadius - this.radius))];
+    }
+    int left = Math.max(0, v.screenX(p.col));
+    int top = Math.max(0, v.screenY(p.row));
+    int right = Math.min(v.screenWidth, v.screenX(p.col) + v.scale);
+    int bottom = Math.min(v.screenHeight, v.screenY(p.row) + v.scale);
+    for (int x = left; x < right; x++) {
+      for (int y = top; y < bottom; y++) {
+        this.overview.setPixel(x, y, c);
+      }
+    }
+  }
+
+  // Randomly rotate each piece on the board
+  void randomizeBoard() {
+    for (ArrayList<GamePiece> col : this.board) {
+      for (GamePiece piece : col) {
+        piece.rotate(Tiles.randomTurns(this.rand));
+      }
+    }
+  }
+
+  // Handles mouse clicks
+  public void onMouseClicked(Posn pos) {
+    long start = Metrics.begin();
+    long alloc = Metrics.allocated();
+    int idx = this.pieceAt(pos);
+    if (idx >= 0 && this.input != null) {
+      this.input.rotate(idx);
+    }
+    else if (idx >= 0) {
+      this.nodes.get(idx).rotate();
+      this.dirty.mark(idx);
+      this.relightAfterRotate(idx / this.height, idx % this.height);
+    }
+    Metrics.end(Metrics.MOUSE_CLICKED, start, alloc);
+  }
+
+  // Return the index of the piece whose tile the given position in the
+  // window falls strictly inside, or -1 if it is off the board or on a
+  // tile edge
+  int pieceAt(Posn pos) {
+    return this.currentView().tileAt(pos.x, pos.y, this.width, this.height);
+  }
+
+  // Return the piece at given col and row
+  GamePiece getPiece(int col, int row) {
+    return this.board.get(col).get(row);
+  }
+
+  // Generates links between neighboring pieces
+  void linkPieces() {
+
+    for (int col = 0; col < board.size(); col++) {
+      for (int row = 0; row < board.get(col).size(); row++) {
+        if (this.height - 1 != row) { // not the bottom row
+          getPiece(col, row).bottomPiece = getPiece(col, row + 1);
+          // add the tile below
+        }
+        if (this.width - col > 1) { // not the rightmost column
+          getPiece(col, row).rightPiece = getPiece(col + 1, row);
+          // add the tile to the right
+        }
+        if (row > 0) { // not the top row
+          getPiece(col, row).topPiece = getPiece(col, row - 1);
+          // add the tile above
+        }
+        if (col > 0) { // not the leftmost column
+          getPiece(col, row).leftPiece = getPiece(col - 1, row);
+          // add the tile to the left
+        }
+      }
+    }
+  }
+
+  // Lights all wires connected to the power station within this.radius
+  void checkLit() {
+    long start = Metrics.begin();
+    long alloc = Metrics.allocated();
+    this.lighting.relight(this, this.powerCol * this.height + this.powerRow, this.radius);
+    for (int i = 0; i < this.nodes.size(); i++) {
+      this.updateLit(i);
+    }
+    Metrics.end(Metrics.CHECK_LIT, start, alloc);
+    if (this.checkWin()) {
+      this.endOfWorld("You win!");
+    }
+  }
+
+  // Updates the lighting after the piece at col and row was rotated
+  void relightAfterRotate(int col, int row) {
+    if (this.incremental) {
+      this.repairAfterRotate(col * this.height + row);
+      if (this.checkWin()) {
+        this.endOfWorld("You win!");
+      }
+    }
+    else {
+      this.checkLit();
+    }
+  }
+
+  // Repairs the lighting around the piece at index idx after it was
+  // rotated, without checking for a win
+  void repairAfterRotate(int idx) {
+    this.lighting.rotated(this, idx, this.powerCol * this.height + this.powerRow, this.radius);
+    for (int i = 0; i < this.lighting.changedSize; i++) {
+      this.updateLit(this.lighting.changed[i]);
+    }
+  }
+
+  // Applies the moves queued in input since the last tick, if clicks
+  // and keys are being queued
+  public void onTick() {
+    if (this.input != null && this.input.events > 0) {
+      this.applyInput();
+    }
+  }
+
+  // Applies the net moves queued in input and relights once: the whole
+  // board if the power station moved or lighting is not incremental, or
+  // else around each piece whose mask changed. Checks for a win once
+  void applyInput() {
+    boolean full = this.input.power >= 0 || !this.incremental;
+    for (int i = 0; i < this.input.touchedSize; i++) {
+      int idx = this.input.touched[i];
+      if (this.input.turns(idx) != 0) {
+        this.nodes.get(idx).rotate(this.input.turns(idx));
+        this.dirty.mark(idx);
+        if (!full) {
+          this.repairAfterRotate(idx);
+        }
+      }
+    }
+    if (this.input.power >= 0) {
+      int from = this.powerCol * this.height + this.powerRow;
+      this.nodes.get(from).powerStation = false;
+      this.nodes.get(this.input.power).powerStation = true;
+      this.dirty.mark(from);
+      this.dirty.mark(this.input.power);
+      this.powerCol = this.input.power / this.height;
+      this.powerRow = this.input.power % this.height;
+    }
+    this.input.clear();
+    if (full) {
+      this.checkLit();
+    }
+    else if (this.checkWin()) {
+      this.endOfWorld("You win!");
+    }
+  }
+
+  // Copies the lighting of the piece at index idx from the lighting engine,
+  // and marks it dirty if that changes how it looks
+  void updateLit(int idx) {
+    GamePiece p = this.nodes.get(idx);
+    boolean wasLit = p.isLit;
+    int prevRadius = p.litRadius;
+    p.isLit = this.lighting.isLit(idx);
+    if (p.isLit && this.lighting.litRadius(idx, this.radius) > p.litRadius) {
+      p.litRadius = this.lighting.litRadius(idx, this.radius);
+    }
+    if (p.isLit != wasLit || p.litRadius != prevRadius) {
+      this.dirty.mark(idx);
+    }
+  }
+
+  // Check if the player has connected and lit all the wires
+  // in constant time, from the lit count the lighting engine keeps
+  boolean checkWin() {
+    return this.lighting.allLit();
+  }
+
+  // Return the first piece that is not lit, or null if they all are
+  GamePiece firstUnlit() {
+    int idx = this.lighting.firstUnlit();
+    return idx < 0 ? null : this.nodes.get(idx);
+  }
+
+  // Turns every piece so that all of them join the power station, using
+  // the solver, and returns false leaving the board alone if none can
+  // or the solver gave up
+  boolean solve() {
+    Solver solver = new Solver(this.compact());
+    if (!solver.solve()) {
+      return false;
+    }
+    for (int i = 0; i < this.nodes.size(); i++) {
+      this.nodes.get(i).rotate(solver.turns[i]);
+    }
+    this.dirty.markAll();
+    this.checkLit();
+    return true;
+  }
+
+  // Returns the win screen
+  public WorldScene lastScene(String s) {
+    Color c;
+    int x = this.width * this.tileSize;
+    int y = this.height * this.tileSize;
+    WorldScene ws = new WorldScene(x, y);
+    c = Color.GREEN;
+
+    ws.placeImageXY(new TextImage(s, c), x / 2, y / 2);
+    return ws;
+  }
+
+  // Handles arrow key inputs and updates the wire lighting,
+  // and, when a view is set, scrolls with w, a, s and d and zooms with
+  // + and -
+  public void onKeyEvent(String ke) {
+    if (this.view != null && this.onViewKey(ke)) {
+      return;
+    }
+    long start = Metrics.begin();
+    long alloc = Metrics.allocated();
+    int dir = -1;
+    if (ke.equals("left")) {
+      dir = Tiles.LEFT;
+    }
+    else if (ke.equals("right")) {
+      dir = Tiles.RIGHT;
+    }
+    else if (ke.equals("up")) {
+      dir = Tiles.TOP;
+    }
+    else if (ke.equals("down")) {
+      dir = Tiles.BOTTOM;
+    }
+    if (this.input != null) {
+      if (dir >= 0) {
+        this.input.movePower(this, this.powerCol * this.height + this.powerRow, dir);
+      }
+      Metrics.end(Metrics.KEY_EVENT, start, alloc);
+      return;
+    }
+    int to = -1;
+    if (dir >= 0) {
+      to = this.lighting.linked(this, this.powerCol * this.height + this.powerRow, dir);
+    }
+    if (to >= 0) {
+      this.movePowerTo(to);
+    }
+    Metrics.end(Metrics.KEY_EVENT, start, alloc);
+  }
+
+  // Moves the power station to the piece at index to, which must be
+  // connected to it, and relights: only the pieces lit before or after
+  // the move if lighting is incremental, or else the whole board
+  void movePowerTo(int to) {
+    int from = this.powerCol * this.height + this.powerRow;
+    this.nodes.get(from).powerStation = false;
+    this.nodes.get(to).powerStation = true;
+    this.dirty.mark(from);
+    this.dirty.mark(to);
+    this.powerCol = to / this.height;
+    this.powerRow = to % this.height;
+    if (this.incremental) {
+      this.lighting.moved(this, from, to, this.radius);
+      for (int i = 0; i < this.lighting.changedSize; i++) {
+        this.updateLit(this.lighting.changed[i]);
+      }
+      if (this.checkWin()) {
+        this.endOfWorld("You win!");
+      }
+    }
+    else {
+      this.checkLit();
+    }
+  }
+
+  // Moves the power station straight to the piece it can reach along
+  // connected wires that is nearest to col and row, in one move instead
+  // of one arrow key at a time, and returns the index it ends up at
+  int jumpPower(int col, int row) {
+    int from = this.powerCol * this.height + this.powerRow;
+    col = Math.max(0, Math.min(this.width - 1, col));
+    row = Math.max(0, Math.min(this.height - 1, row));
+    int to = this.lighting.nearest(this, from, col * this.height + row);
+    if (to != from) {
+      this.movePowerTo(to);
+    }
+    return to;
+  }
+
+  // Moves or zooms the view for the given key, returning false if the
+  // key does not control the view
+  boolean onViewKey(String ke) {
+    int step = Math.max(this.view.scale, this.view.screenWidth / 4);
+    if (ke.equals("a")) {
+      this.view.scroll(-step, 0, this.width, this.height);
+    }
+    else if (ke.equals("d")) {
+      this.view.scroll(step, 0, this.width, this.height);
+    }
+    else if (ke.equals("w")) {
+      this.view.scroll(0, -step, this.width, this.height);
+    }
+    else if (ke.equals("s")) {
+      this.view.scroll(0, step, this.width, this.height);
+    }
+    else if (ke.equals("+") || ke.equals("=")) {
+      this.view.zoom(this.view.scale * 2, this.width, this.height);
+    }
+    else if (ke.equals("-")) {
+      this.view.zoom(this.view.scale / 2, this.width, this.height);
+    }
+    else {
+      return false;
+    }
+    return true;
+  }
+
+}
+
+class GamePiece {
+  // in logical coordinates, with the origin
+  // at the top-left corner of the screen
+  int row;
+  int col;
+  // whether this GamePiece is connected to the
+  // adjacent left, right, top, or bottom pieces
+  boolean left;
+  boolean right;
+  boolean top;
+  boolean bottom;
+
+  // neighboring pieces, null if doesn't exist
+  GamePiece leftPiece;
+  GamePiece rightPiece;
+  GamePiece topPiece;
+  GamePiece bottomPiece;
+  // whether the power station is on this piece
+  boolean powerStation;
+  boolean isLit;
+  int litRadius;
+
+  GamePiece(int row, int col, boolean left, boolean right, boolean top, boolean bottom,
+      boolean powerStation) {
+    this.row = row;
+    this.col = col;
+    this.left = left;
+    this.right = right;
+    this.top = top;
+    this.bottom = bottom;
+    this.powerStation = powerStation;
+    this.isLit = false;
+    this.litRadius = 0;
+  }
+
+  // Draw this piece
+  WorldImage draw(int radius) {
+    return this.draw(radius, 60);
+  }
+
+  // Draw this piece on a tile of the given size, reusing the prebuilt
+  // image of every piece that looks the same
+  WorldImage draw(int radius, int size) {
+    return TileImageCache.forSize(size).image(this.mask(), this.isLit,
+        this.litRadius - radius, this.powerStation);
+  }
+
+  // Rotate this piece
+  void rotate() {
+    this.rotate(1);
+  }
+
+  // Rotate this piece clockwise by the given number of quarter turns
+  void rotate(int turns) {
+    this.setMask(Tiles.rotate(this.mask(), turns));
+  }
+
+  // Return the connections of this piece as a Tiles mask
+  int mask() {
+    int mask = 0;
+    if (this.top) {
+      mask |= Tiles.TOP_BIT;
+    }
+    if (this.right) {
+      mask |= Tiles.RIGHT_BIT;
+    }
+    if (this.bottom) {
+      mask |= Tiles.BOTTOM_BIT;
+    }
+    if (this.left) {
+      mask |= Tiles.LEFT_BIT;
+    }
+    return mask;
+  }
+
+  // Set the connections of this piece from a Tiles mask
+  void setMask(int mask) {
+    this.top = (mask & Tiles.TOP_BIT) != 0;
+    this.right = (mask & Tiles.RIGHT_BIT) != 0;
+    this.bottom = (mask & Tiles.BOTTOM_BIT) != 0;
+    this.left = (mask & Tiles.LEFT_BIT) != 0;
+  }
+
+  // Return whether this piece is lit
+  boolean isLit() {
+    return this.isLit;
+  }
+
+  // Unlight this GamePiece
+  void unlight() {
+    this.isLit = false;
+  }
+}
+
+class Edge {
+  GamePiece fromNode;
+  GamePiece toNode;
+  int weight;
+
+  Edge(GamePiece fromNode, GamePiece toNode, int weight) {
+    this.fromNode = fromNode;
+    this.toNode = toNode;
+    this.weight = weight;
+  }
+}
+
+class ExamplesLightEmAll {
+  LightEmAll l;
+  LightEmAll g;
+  LightEmAll h;
+  int x;
+  int y;
+
+  void initTest() {
+    x = 8;
+    y = 8;
+    l = new LightEmAll(x, y, new Random(0));
+    g = new LightEmAll(2, 2, new Random(0));
+    h = new LightEmAll(1, 2, new Random(5));
+  }
+
+  void testGenerateBoard(Tester t) {
+    initTest();
+    t.checkExpect(l.board.size(), l.width);
+    for (int i = 0; i < l.board.size(); i++) {
+      t.checkExpect(l.board.get(i).size(), l.height);
+    }
+    t.checkExpect(l.nodes.size(), l.width * l.height);
+    t.checkExpect(l.getPiece(0, 0).powerStation, true);
+  }
+
+  void testRandomize(Tester t) {
+    initTest();
+    t.checkExpect(h.checkWin(), true);
+    h.randomizeBoard();
+    h.checkLit();
+    t.checkExpect(h.checkWin(), false);
+  }
+
+  void testRotations(Tester t) {
+    int corner = Tiles.TOP_BIT | Tiles.RIGHT_BIT;
+    t.checkExpect(Tiles.rotate(corner, 0), corner);
+    t.checkExpect(Tiles.rotate(corner, 1), Tiles.RIGHT_BIT | Tiles.BOTTOM_BIT);
+    t.checkExpect(Tiles.rotate(corner, 2), Tiles.BOTTOM_BIT | Tiles.LEFT_BIT);
+    t.checkExpect(Tiles.rotate(corner, 3), Tiles.LEFT_BIT | Tiles.TOP_BIT);
+    t.checkExpect(Tiles.rotate(corner, 4), corner);
+    t.checkExpect(Tiles.connected(corner, Tiles.RIGHT, Tiles.LEFT_BIT), true);
+    t.checkExpect(Tiles.connected(corner, Tiles.RIGHT, Tiles.RIGHT_BIT), false);
+    t.checkExpect(Tiles.connected(corner, Tiles.LEFT, Tiles.RIGHT_BIT), false);
+    t.checkExpect(Tiles.randomTurns(new Random(4)) < 4, true);
+  }
+
+  void testRotate(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(0, 0).left, false);
+    t.checkExpect(l.getPiece(0, 0).right, true);
+    t.checkExpect(l.getPiece(0, 0).top, true);
+    t.checkExpect(l.getPiece(0, 0).bottom, false);
+    l.getPiece(0, 0).rotate();
+    t.checkExpect(l.getPiece(0, 0).left, false);
+    t.checkExpect(l.getPiece(0, 0).right, true);
+    t.checkExpect(l.getPiece(0, 0).top, false);
+    t.checkExpect(l.getPiece(0, 0).bottom, true);
+    l.getPiece(0, 0).rotate();
+    t.checkExpect(l.getPiece(0, 0).left, true);
+    t.checkExpect(l.getPiece(0, 0).right, false);
+    t.checkExpect(l.getPiece(0, 0).top, false);
+    t.checkExpect(l.getPiece(0, 0).bottom, true);
+    l.getPiece(0, 0).rotate();
+    t.checkExpect(l.getPiece(0, 0).left, true);
+    t.checkExpect(l.getPiece(0, 0).right, false);
+    t.checkExpect(l.getPiece(0, 0).top, true);
+    t.checkExpect(l.getPiece(0, 0).bottom, false);
+  }
+
+  void testIsLit(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(0, 0).isLit(), true);
+    t.checkExpect(l.getPiece(7, 7).isLit(), false);
+  }
+
+  void testLinkPieces(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(4, 4).leftPiece, l.getPiece(3, 4));
+    t.checkExpect(l.getPiece(4, 4).rightPiece, l.getPiece(5, 4));
+    t.checkExpect(l.getPiece(4, 4).topPiece, l.getPiece(4, 3));
+    t.checkExpect(l.getPiece(4, 4).bottomPiece, l.getPiece(4, 5));
+    t.checkExpect(l.getPiece(0, 0).leftPiece, null);
+    t.checkExpect(l.getPiece(0, 0).rightPiece, l.getPiece(1, 0));
+    t.checkExpect(l.getPiece(0, 0).topPiece, null);
+    t.checkExpect(l.getPiece(0, 0).bottomPiece, l.getPiece(0, 1));
+  }
+
+  void testOnMouseClicked(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(0, 0).left, false);
+    t.checkExpect(l.getPiece(0, 0).right, true);
+    t.checkExpect(l.getPiece(0, 0).top, true);
+    t.checkExpect(l.getPiece(0, 0).bottom, false);
+    l.onMouseClicked(new Posn(10, 10));
+    t.checkExpect(l.getPiece(0, 0).left, false);
+    t.checkExpect(l.getPiece(0, 0).right, true);
+    t.checkExpect(l.getPiece(0, 0).top, false);
+    t.checkExpect(l.getPiece(0, 0).bottom, true);
+    l.onMouseClicked(new Posn(10, 10));
+    t.checkExpect(l.getPiece(0, 0).left, true);
+    t.checkExpect(l.getPiece(0, 0).right, false);
+    t.checkExpect(l.getPiece(0, 0).top, false);
+    t.checkExpect(l.getPiece(0, 0).bottom, true);
+    l.onMouseClicked(new Posn(10, 10));
+    t.checkExpect(l.getPiece(0, 0).left, true);
+    t.checkExpect(l.getPiece(0, 0).right, false);
+    t.checkExpect(l.getPiece(0, 0).top, true);
+    t.checkExpect(l.getPiece(0, 0).bottom, false);
+  }
+
+  void testPieceAt(Tester t) {
+    initTest();
+    t.checkExpect(l.pieceAt(new Posn(10, 10)), 0);
+    t.checkExpect(l.pieceAt(new Posn(70, 10)), l.height);
+    t.checkExpect(l.pieceAt(new Posn(70, 130)), l.height + 2);
+    t.checkExpect(l.pieceAt(new Posn(60, 10)), -1);
+    t.checkExpect(l.pieceAt(new Posn(10, 120)), -1);
+    t.checkExpect(l.pieceAt(new Posn(0, 10)), -1);
+    t.checkExpect(l.pieceAt(new Posn(-10, 10)), -1);
+    t.checkExpect(l.pieceAt(new Posn(479, 479)), 63);
+    t.checkExpect(l.pieceAt(new Posn(481, 10)), -1);
+    l.tileSize = 20;
+    t.checkExpect(l.pieceAt(new Posn(70, 10)), 3 * l.height);
+    t.checkExpect(l.pieceAt(new Posn(159, 159)), 63);
+    t.checkExpect(l.pieceAt(new Posn(161, 10)), -1);
+  }
+
+  void testOnKeyEvent(Tester t) {
+    initTest();
+    l.onMouseClicked(new Posn(70, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    t.checkExpect(l.powerCol, 0);
+    t.checkExpect(l.powerRow, 0);
+    t.checkExpect(l.getPiece(0, 0).powerStation, true);
+    t.checkExpect(l.getPiece(1, 0).powerStation, false);
+    l.onKeyEvent("right");
+    t.checkExpect(l.powerCol, 1);
+    t.checkExpect(l.powerRow, 0);
+    t.checkExpect(l.getPiece(0, 0).powerStation, false);
+    t.checkExpect(l.getPiece(1, 0).powerStation, true);
+    l.onKeyEvent("right");
+    t.checkExpect(l.powerCol, 2);
+    t.checkExpect(l.powerRow, 0);
+    t.checkExpect(l.getPiece(1, 0).powerStation, false);
+    t.checkExpect(l.getPiece(2, 0).powerStation, true);
+    l.onKeyEvent("right");
+    t.checkExpect(l.powerCol, 3);
+    t.checkExpect(l.powerRow, 0);
+    t.checkExpect(l.getPiece(2, 0).powerStation, false);
+    t.checkExpect(l.getPiece(3, 0).powerStation, true);
+    l.onKeyEvent("right");
+    t.checkExpect(l.powerCol, 4);
+    t.checkExpect(l.powerRow, 0);
+    t.checkExpect(l.getPiece(3, 0).powerStation, false);
+    t.checkExpect(l.getPiece(4, 0).powerStation, true);
+    l.onKeyEvent("down");
+    t.checkExpect(l.powerCol, 4);
+    t.checkExpect(l.powerRow, 1);
+    t.checkExpect(l.getPiece(4, 0).powerStation, false);
+    t.checkExpect(l.getPiece(4, 1).powerStation, true);
+    l.onKeyEvent("up");
+    t.checkExpect(l.powerCol, 4);
+    t.checkExpect(l.powerRow, 0);
+    t.checkExpect(l.getPiece(4, 1).powerStation, false);
+    t.checkExpect(l.getPiece(4, 0).powerStation, true);
+    l.onKeyEvent("left");
+    t.checkExpect(l.powerCol, 3);
+    t.checkExpect(l.powerRow, 0);
+    t.checkExpect(l.getPiece(4, 0).powerStation, false);
+    t.checkExpect(l.getPiece(3, 0).powerStation, true);
+
+  }
+
+  void testCheckLit(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(0, 0).isLit, true);
+    t.checkExpect(l.getPiece(1, 0).isLit, false);
+    t.checkExpect(l.getPiece(2, 0).isLit, false);
+    l.onMouseClicked(new Posn(70, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    t.checkExpect(l.getPiece(0, 0).isLit, true);
+    t.checkExpect(l.getPiece(1, 0).isLit, true);
+    t.checkExpect(l.getPiece(2, 0).isLit, true);
+  }
+
+  void testRelight(Tester t) {
+    initTest();
+    t.checkExpect(l.lighting.dist[0], 0);
+    t.checkExpect(l.getPiece(0, 0).litRadius, 8);
+    t.checkExpect(l.lighting.dist[1 * l.height + 0], LightingEngine.UNREACHED);
+    t.checkExpect(h.getPiece(0, 1).isLit, true);
+    t.checkExpect(h.lighting.dist[1], 1);
+    t.checkExpect(h.getPiece(0, 1).litRadius, 7);
+    h.radius = 0;
+    h.checkLit();
+    t.checkExpect(h.getPiece(0, 0).isLit, true);
+    t.checkExpect(h.getPiece(0, 1).isLit, false);
+  }
+
+  void testRelightAfterRotate(Tester t) {
+    initTest();
+    l.onMouseClicked(new Posn(70, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    t.checkExpect(l.lighting.changedSize > 0, true);
+    int[] repaired = l.lighting.dist.clone();
+    l.checkLit();
+    t.checkExpect(repaired, l.lighting.dist);
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    t.checkExpect(l.getPiece(2, 0).isLit, true);
+    repaired = l.lighting.dist.clone();
+    l.checkLit();
+    t.checkExpect(repaired, l.lighting.dist);
+  }
+
+  void testCheckWin(Tester t) {
+    initTest();
+    t.checkExpect(g.checkWin(), false);
+    g.getPiece(0, 0).rotate();
+    g.getPiece(0, 0).rotate();
+    g.getPiece(0, 0).rotate();
+    g.getPiece(1, 0).rotate();
+    g.getPiece(1, 0).rotate();
+    g.getPiece(0, 1).rotate();
+    g.getPiece(0, 1).rotate();
+    g.getPiece(0, 1).rotate();
+    g.getPiece(1, 1).rotate();
+    g.getPiece(1, 1).rotate();
+    g.getPiece(1, 1).rotate();
+    g.checkLit();
+    t.checkExpect(g.checkWin(), true);
+    t.checkExpect(g.firstUnlit(), null);
+    t.checkExpect(g.lighting.litCount, 4);
+    g.onMouseClicked(new Posn(70, 10));
+    t.checkExpect(g.checkWin(), false);
+    t.checkExpect(g.lighting.litCount, 3);
+    t.checkExpect(g.firstUnlit(), g.getPiece(1, 1));
+    g.onMouseClicked(new Posn(70, 10));
+    g.onMouseClicked(new Posn(70, 10));
+    g.onMouseClicked(new Posn(70, 10));
+    t.checkExpect(g.checkWin(), true);
+  }
+
+  void testSolver(Tester t) {
+    initTest();
+    Solver small = new Solver(g.compact());
+    t.checkExpect(small.solve(), true);
+    t.checkExpect(small.turns, new int[] {3, 3, 2, 3});
+    t.checkExpect(g.solve(), true);
+    t.checkExpect(g.checkWin(), true);
+    CompactBoard board = l.compact();
+    Solver solver = new Solver(board);
+    t.checkExpect(solver.solve(), true);
+    for (int i = 0; i < board.tiles.length; i++) {
+      board.setMask(i, Tiles.rotate(board.mask(i), solver.turns[i]));
+    }
+    board.radius = 64;
+    LightingEngine engine = new LightingEngine(8, 8);
+    board.relight(engine);
+    t.checkExpect(engine.allLit(), true);
+    CompactBoard straights = new CompactBoard(2, 1);
+    straights.setMask(0, Tiles.TOP_BIT | Tiles.BOTTOM_BIT);
+    straights.setMask(1, Tiles.TOP_BIT | Tiles.BOTTOM_BIT);
+    t.checkExpect(new Solver(straights).solve(), false);
+    t.checkExpect(new Solver(straights).search(), Solver.NONE);
+    // a board that needs a few guesses undone gives up past its budget
+    CompactBoard guessed = CompactBoard.generate(100, 100, new Random(112), EdgeSort.HEAP);
+    Solver patient = new Solver(guessed);
+    t.checkExpect(patient.search(), Solver.SOLVED);
+    t.checkExpect(patient.backtracks > 0, true);
+    Solver hasty = new Solver(guessed);
+    hasty.budget = 0;
+    t.checkExpect(hasty.search(), Solver.UNKNOWN);
+    t.checkExpect(hasty.turns, null);
+    // backtracking in board order ran for minutes on this board
+    CompactBoard large = CompactBoard.generate(500, 500, new Random(5), EdgeSort.HEAP);
+    Solver quick = new Solver(large);
+    t.checkExpect(quick.search(), Solver.SOLVED);
+    t.checkExpect(quick.backtracks <= Solver.BUDGET, true);
+    for (int i = 0; i < large.tiles.length; i++) {
+      large.setMask(i, Tiles.rotate(large.mask(i), quick.turns[i]));
+    }
+    large.radius = large.tiles.length;
+    LightingEngine lit = new LightingEngine(500, 500);
+    large.relight(lit);
+    t.checkExpect(lit.allLit(), true);
+  }
+
+  void testCompactBoard(Tester t) {
+    initTest();
+    CompactBoard generated = CompactBoard.generate(8, 8, new Random(0), EdgeSort.HEAP);
+    t.checkExpect(generated.tiles, l.compact().tiles);
+    t.checkExpect(generated.mask(0), Tiles.TOP_BIT | Tiles.RIGHT_BIT);
+    t.checkExpect(generated.isLit(0), true);
+    t.checkExpect(generated.isLit(generated.index(7, 7)), false);
+    t.checkExpect(generated.neighbor(0, Tiles.LEFT), -1);
+    t.checkExpect(generated.neighbor(0, Tiles.RIGHT), 8);
+    generated.rotate(0);
+    t.checkExpect(generated.mask(0), Tiles.RIGHT_BIT | Tiles.BOTTOM_BIT);
+    t.checkExpect(generated.isLit(0), true);
+    LightEmAll shown = new LightEmAll(l.compact());
+    t.checkExpect(shown.compact().tiles, l.compact().tiles);
+    t.checkExpect(shown.getPiece(0, 0).powerStation, true);
+    t.checkExpect(shown.getPiece(4, 4).leftPiece, shown.getPiece(3, 4));
+  }
+
+  void testMask(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(0, 0).mask(), Tiles.TOP_BIT | Tiles.RIGHT_BIT);
+    l.getPiece(0, 0).setMask(Tiles.LEFT_BIT | Tiles.BOTTOM_BIT);
+    t.checkExpect(l.getPiece(0, 0).left, true);
+    t.checkExpect(l.getPiece(0, 0).bottom, true);
+    t.checkExpect(l.getPiece(0, 0).top, false);
+    t.checkExpect(l.getPiece(0, 0).right, false);
+    t.checkExpect(Tiles.rotate(Tiles.LEFT_BIT | Tiles.BOTTOM_BIT), Tiles.LEFT_BIT | Tiles.TOP_BIT);
+  }
+
+  void testParallelGeneration(Tester t) {
+    ParallelBoardGenerator single = new ParallelBoardGenerator(1);
+    ParallelBoardGenerator generator = new ParallelBoardGenerator(3);
+    CompactBoard one = single.generate(40, 30, 9);
+    CompactBoard three = generator.generate(40, 30, 9);
+    t.checkExpect(one.tiles, three.tiles);
+    t.checkExpect(Arrays.equals(generator.generate(40, 30, 10).tiles, one.tiles), false);
+    // several random chunks and filter blocks give the same board too
+    CompactBoard big = single.generate(400, 200, 9);
+    t.checkExpect(big.tiles, generator.generate(400, 200, 9).tiles);
+    int bigConnections = 0;
+    for (int i = 0; i < big.tiles.length; i++) {
+      bigConnections += Integer.bitCount(big.mask(i));
+    }
+    t.checkExpect(bigConnections, 2 * (400 * 200 - 1));
+    CompactBoard tree = new CompactBoard(40, 30);
+    long[] keys = generator.edges(40, 30, 9);
+    Arrays.sort(keys);
+    generator.spanningTree(tree, keys);
+    int connections = 0;
+    for (int i = 0; i < tree.tiles.length; i++) {
+      connections += Integer.bitCount(tree.mask(i));
+    }
+    t.checkExpect(connections, 2 * (40 * 30 - 1));
+    tree.radius = 40 * 30;
+    tree.relight(new LightingEngine(40, 30));
+    boolean allLit = true;
+    for (int i = 0; i < tree.tiles.length; i++) {
+      allLit = allLit && tree.isLit(i);
+    }
+    t.checkExpect(allLit, true);
+    single.close();
+    generator.close();
+    t.checkExpect(generator.pool.isShutdown(), true);
+    ForkJoinPool shared = new ForkJoinPool(2);
+    new ParallelBoardGenerator(shared).close();
+    t.checkExpect(shared.isShutdown(), false);
+    shared.shutdown();
+  }
+
+  void testBatchGenerator(Tester t) {
+    initTest();
+    BatchGenerator batch = new BatchGenerator(8, 8, 2);
+    CompactBoard[] boards = new CompactBoard[6];
+    batch.generate(0, 6, (seed, board) -> boards[(int) seed] = board);
+    batch.shutdown();
+    t.checkExpect(boards[0].tiles, l.compact().tiles);
+    for (int seed = 0; seed < 6; seed++) {
+      t.checkExpect(boards[seed].tiles,
+          CompactBoard.generate(8, 8, new Random(seed), EdgeSort.HEAP).tiles);
+    }
+    BatchGenerator.Worker worker = new BatchGenerator.Worker(8, 8, EdgeSort.HEAP);
+    t.checkExpect(worker.generate(3).tiles, boards[3].tiles);
+    t.checkExpect(worker.generate(0).tiles, boards[0].tiles);
+  }
+
+  void testBoardFile(Tester t) {
+    initTest();
+    EdgeList edges = new EdgeList(8, 8, new Random(0));
+    edges.sort(EdgeSort.HEAP);
+    int[] positions = edges.spanningTree();
+    int[] tree = new int[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      tree[i] = edges.id(positions[i]);
+    }
+    CompactBoard odd = new CompactBoard(3, 1);
+    odd.setMask(0, Tiles.RIGHT_BIT);
+    odd.setMask(1, Tiles.LEFT_BIT | Tiles.RIGHT_BIT);
+    odd.setMask(2, Tiles.LEFT_BIT);
+    odd.powerCol = 1;
+    odd.radius = 2;
+    try {
+      Path file = Files.createTempFile("board", ".lea");
+      BoardFile.write(file, l.compact(), tree);
+      t.checkExpect(Files.size(file), (long) BoardFile.HEADER + 32 + 4 * 63);
+      MappedBoard mapped = BoardFile.map(file);
+      t.checkExpect(mapped.width, 8);
+      t.checkExpect(mapped.hasTree, true);
+      t.checkExpect(mapped.treeId(0), tree[0]);
+      t.checkExpect(mapped.treeId(62), tree[62]);
+      t.checkExpect(mapped.mask(9), l.mask(9));
+      CompactBoard loaded = BoardFile.read(file);
+      t.checkExpect(loaded.isLit(0), false);
+      loaded.relight(new LightingEngine(8, 8));
+      t.checkExpect(loaded.tiles, l.compact().tiles);
+
+      BoardFile.write(file, odd, null);
+      t.checkExpect(Files.size(file), (long) BoardFile.HEADER + 2);
+      CompactBoard oddLoaded = BoardFile.read(file);
+      t.checkExpect(oddLoaded.tiles, odd.tiles);
+      t.checkExpect(oddLoaded.powerCol, 1);
+      t.checkExpect(oddLoaded.radius, 2);
+      t.checkExpect(BoardFile.map(file).hasTree, false);
+
+      Files.write(file, new byte[] {1, 2, 3});
+      String message = null;
+      try {
+        BoardFile.map(file);
+      }
+      catch (IOException e) {
+        message = e.getMessage();
+      }
+      t.checkExpect(message, file + " is not a board file");
+      Files.delete(file);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  void testStreamingGenerator(Tester t) {
+    CompactBoard collected = new CompactBoard(7, 5);
+    StreamingGenerator generator = new StreamingGenerator(7, 5, 3);
+    try {
+      generator.generate((col, masks) -> System.arraycopy(masks, 0, collected.tiles,
+          col * 5, 5));
+      int connections = 0;
+      for (int i = 0; i < collected.tiles.length; i++) {
+        connections += Integer.bitCount(collected.mask(i));
+      }
+      t.checkExpect(connections, 2 * (7 * 5 - 1));
+      t.checkExpect(new Solver(collected).solve(), true);
+      Path file = Files.createTempFile("stream", ".lea");
+      generator.write(file);
+      t.checkExpect(Files.size(file), (long) BoardFile.HEADER + 18);
+      t.checkExpect(BoardFile.read(file).tiles, collected.tiles);
+      new StreamingGenerator(7, 5, 4).write(file);
+      t.checkExpect(Arrays.equals(BoardFile.read(file).tiles, collected.tiles), false);
+      Files.delete(file);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  void testMoveLog(Tester t) {
+    MoveLog log = new MoveLog();
+    t.checkExpect(log.append(MoveLog.rotation(20, 1)), 0);
+    t.checkExpect(log.append(MoveLog.powerMove(Tiles.LEFT)), 2);
+    t.checkExpect(Arrays.copyOf(log.data, log.size), new byte[] {(byte) 0xA1, 1, 7});
+    t.checkExpect(log.moveAt(0), MoveLog.rotation(20, 1));
+    t.checkExpect(log.next, 2);
+    t.checkExpect(MoveLog.inverse(log.moveAt(0)), MoveLog.rotation(20, 3));
+    t.checkExpect(MoveLog.inverse(log.moveAt(2)), MoveLog.powerMove(Tiles.RIGHT));
+    t.checkExpect(MoveLog.tile(MoveLog.rotation(1 << 28, 2)), 1 << 28);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MoveLog copy = new MoveLog();
+    try {
+      log.write(out);
+      copy.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+    t.checkExpect(copy.moves, 2L);
+    t.checkExpect(copy.moveAt(2), MoveLog.powerMove(Tiles.LEFT));
+  }
+
+  void testRecordedGame(Tester t) {
+    initTest();
+    RecordedGame game = new RecordedGame(l.compact());
+    t.checkExpect(game.undo(), false);
+    game.rotate(1, 0);
+    game.rotate(4, 0);
+    game.rotate(4, 0);
+    game.rotate(4, 0);
+    t.checkExpect(game.movePower(Tiles.RIGHT), true);
+    t.checkExpect(game.movePower(Tiles.TOP), false);
+    t.checkExpect(game.log.moves, 5L);
+    byte[] after = game.game.board.tiles.clone();
+    t.checkExpect(game.undo(), true);
+    t.checkExpect(game.game.board.powerCol, 0);
+    t.checkExpect(game.undo(), true);
+    t.checkExpect(game.game.board.mask(game.game.board.index(4, 0)),
+        Tiles.rotate(l.compact().mask(l.compact().index(4, 0)), 2));
+    t.checkExpect(game.redo(), true);
+    t.checkExpect(game.redo(), true);
+    t.checkExpect(game.redo(), false);
+    t.checkExpect(game.game.board.tiles, after);
+    t.checkExpect(game.log.moves, 9L);
+    t.checkExpect(game.boardAfter(9).tiles, after);
+    t.checkExpect(game.boardAfter(0).tiles, l.compact().tiles);
+    t.checkExpect(game.boardAfter(4).powerCol, 0);
+    t.checkExpect(RecordedGame.replay(l.compact(), game.log, 2).board.tiles, after);
+    game.undo();
+    game.rotate(0, 0);
+    t.checkExpect(game.redo(), false);
+    t.checkExpect(RecordedGame.replay(l.compact(), game.log, 100).board.tiles,
+        game.game.board.tiles);
+
+    // snapshots of a larger board are packed and spaced by its size, so
+    // they stay well under the size of the log
+    RecordedGame big = new RecordedGame(HeadlessGame.generate(100, 60, 1).board);
+    HeadlessGame halfway = HeadlessGame.generate(100, 60, 1);
+    Random rand = new Random(1);
+    for (int i = 0; i < 30000; i++) {
+      int col = rand.nextInt(100);
+      int row = rand.nextInt(60);
+      big.rotate(col, row);
+      if (i < 15000) {
+        halfway.rotate(col, row);
+      }
+    }
+    t.checkExpect(big.snapshotEvery, 6000);
+    t.checkExpect(big.snapshots.size(), 6);
+    t.checkExpect(big.snapshotBytes() <= big.log.size / 2 + 3000, true);
+    t.checkExpect(big.boardAfter(15000).tiles, halfway.board.tiles);
+    t.checkExpect(big.boardAfter(30000).tiles, big.game.board.tiles);
+  }
+
+  void testInputQueue(Tester t) {
+    InputQueue queue = new InputQueue(8, 8);
+    for (int i = 0; i < 5; i++) {
+      queue.rotate(5);
+    }
+    queue.rotate(9);
+    t.checkExpect(queue.turns(5), 1);
+    t.checkExpect(queue.touchedSize, 2);
+    t.checkExpect(queue.events, 6);
+    queue.clear();
+    t.checkExpect(queue.turns(5), 0);
+    t.checkExpect(queue.touchedSize, 0);
+
+    LightEmAll one = new LightEmAll(8, 8, new Random(0));
+    LightEmAll batched = new LightEmAll(8, 8, new Random(0));
+    batched.input = new InputQueue(8, 8);
+    HeadlessGame headless = HeadlessGame.generate(8, 8, 0);
+    InputQueue headlessQueue = new InputQueue(8, 8);
+    String[] script = {"right", "70", "250", "250", "right", "250", "10", "10", "10", "10",
+        "right", "down", "130", "left"};
+    for (String event : script) {
+      if (Character.isDigit(event.charAt(0))) {
+        Posn click = new Posn(Integer.parseInt(event), 10);
+        one.onMouseClicked(click);
+        batched.onMouseClicked(click);
+        headlessQueue.rotate(one.pieceAt(click));
+      }
+      else {
+        one.onKeyEvent(event);
+        batched.onKeyEvent(event);
+        int dir = event.equals("right") ? Tiles.RIGHT : event.equals("left") ? Tiles.LEFT
+            : Tiles.BOTTOM;
+        headlessQueue.movePower(headless.board,
+            headless.board.index(headless.board.powerCol, headless.board.powerRow), dir);
+      }
+    }
+    t.checkExpect(batched.compact().tiles, new LightEmAll(8, 8, new Random(0)).compact().tiles);
+    batched.onTick();
+    headless.apply(headlessQueue);
+    t.checkExpect(batched.compact().tiles, one.compact().tiles);
+    t.checkExpect(batched.powerCol, one.powerCol);
+    t.checkExpect(batched.powerRow, one.powerRow);
+    t.checkExpect(batched.getPiece(one.powerCol, one.powerRow).powerStation, true);
+    t.checkExpect(headless.board.tiles, one.compact().tiles);
+    t.checkExpect(batched.input.events, 0);
+  }
+
+  void testGameServer(Tester t) {
+    HeadlessGame local = HeadlessGame.generate(8, 8, 0);
+    try {
+      Path dir = Files.createTempDirectory("sessions");
+      // sessions idle for 0ms are saved and dropped almost at once, so
+      // most moves below find their board on disk
+      GameServer server = new GameServer(2, dir, 0);
+      int port = server.start(0);
+      try (GameClient client = new GameClient("127.0.0.1", port)) {
+        long id = client.create(8, 8, 0);
+        t.checkExpect(id, 1L);
+        local.rotate(1, 0);
+        t.checkExpect(client.rotate(id, 1, 0), "LIT " + id + " " + local.lighting.litCount + " 0");
+        local.rotate(4, 0);
+        local.rotate(4, 0);
+        client.send("ROT " + id + " 4 0");
+        client.send("ROT " + id + " 4 0");
+        client.flush();
+        client.receive();
+        t.checkExpect(client.receive(), "LIT " + id + " " + local.lighting.litCount + " 0");
+        local.movePower(Tiles.RIGHT);
+        t.checkExpect(client.power(id, Tiles.RIGHT),
+            "LIT " + id + " " + local.lighting.litCount + " 0");
+        int to = local.jumpPower(7, 7);
+        t.checkExpect(client.jump(id, 7, 7), "AT " + id + " " + to / 8 + " " + to % 8 + " "
+            + local.lighting.litCount + " 0");
+        t.checkExpect(client.rotate(id, 8, 0), "ERR off the board");
+        t.checkExpect(client.rotate(id + 1, 0, 0), "ERR no session " + (id + 1));
+        t.checkExpect(client.call("NEW 2000 2000 1"), "ERR bad board size");
+        t.checkExpect(client.call("HELLO"), "ERR unknown command");
+        t.checkExpect(client.stats().startsWith("STATS 1 "), true);
+        // a client that resets with replies still unsent is dropped alone
+        try (Socket rude = new Socket("127.0.0.1", port)) {
+          rude.setSoLinger(true, 0);
+          rude.getOutputStream().write("STATS\n".repeat(20000)
+              .getBytes(StandardCharsets.US_ASCII));
+        }
+        t.checkExpect(client.stats().startsWith("STATS 1 "), true);
+        // a second session on the same workers plays on unaffected
+        long other = client.create(8, 8, 0);
+        HeadlessGame fresh = HeadlessGame.generate(8, 8, 0);
+        fresh.rotate(1, 0);
+        t.checkExpect(client.rotate(other, 1, 0),
+            "LIT " + other + " " + fresh.lighting.litCount + " 0");
+        local.rotate(2, 0);
+        t.checkExpect(client.rotate(id, 2, 0), "LIT " + id + " " + local.lighting.litCount + " 0");
+        // closing forgets the session and deletes its saved board
+        client.send("ROT " + id + " 3 0");
+        client.send("CLOSE " + id);
+        client.send("ROT " + id + " 3 0");
+        client.flush();
+        t.checkExpect(client.receive().startsWith("LIT " + id), true);
+        t.checkExpect(client.receive(), "CLOSED " + id);
+        t.checkExpect(client.receive(), "ERR no session " + id);
+        t.checkExpect(Files.exists(server.snapshot(id)), false);
+        t.checkExpect(client.closeSession(other), "CLOSED " + other);
+        t.checkExpect(client.stats().startsWith("STATS 0 0 "), true);
+      }
+      server.stop();
+      Files.delete(dir);
+    }
+    catch (IOException | InterruptedException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  void testJumpPower(Tester t) {
+    initTest();
+    t.checkExpect(l.solve(), true);
+    t.checkExpect(l.jumpPower(7, 7), 63);
+    t.checkExpect(l.getPiece(0, 0).powerStation, false);
+    t.checkExpect(l.getPiece(7, 7).powerStation, true);
+    LightingEngine fresh = new LightingEngine(8, 8);
+    fresh.relight(l, 63, l.radius);
+    for (int i = 0; i < 64; i++) {
+      t.checkExpect(l.isLit(i), fresh.isLit(i));
+    }
+    t.checkExpect(l.lighting.litCount, fresh.litCount);
+
+    // moving and jumping the power station relights like a full relight
+    HeadlessGame game = HeadlessGame.generate(16, 16, 3);
+    Random rand = new Random(3);
+    for (int i = 0; i < 400; i++) {
+      game.rotate(rand.nextInt(16), rand.nextInt(16));
+      game.movePower(rand.nextInt(4));
+      if (i % 10 == 0) {
+        int from = game.board.index(game.board.powerCol, game.board.powerRow);
+        int to = game.jumpPower(rand.nextInt(16), rand.nextInt(16));
+        t.checkExpect(game.lighting.nearest(game.board, to, from), from);
+      }
+    }
+    CompactBoard relit = new CompactBoard(16, 16);
+    relit.tiles = game.board.tiles.clone();
+    relit.powerCol = game.board.powerCol;
+    relit.powerRow = game.board.powerRow;
+    relit.relight(new LightingEngine(16, 16));
+    t.checkExpect(game.board.tiles, relit.tiles);
+  }
+
+  void testDelta(Tester t) {
+    initTest();
+    DeltaEncoder encoder = l.remote(true);
+    DeltaDecoder mirror = new DeltaDecoder(64);
+    t.checkExpect(mirror.changed.all, false);
+    mirror.apply(l.delta(encoder));
+    t.checkExpect(mirror.changed.size, 64);
+    t.checkExpect(Arrays.equals(mirror.states, l.compact().tiles), true);
+    t.checkExpect(mirror.litRadius(0), l.getPiece(0, 0).litRadius);
+    t.checkExpect(mirror.power, 0);
+    t.checkExpect(l.delta(encoder), new byte[] {0, 0, 0});
+    mirror.changed.clear();
+    DeltaEncoder second = l.remote(false);
+    DeltaDecoder other = new DeltaDecoder(64);
+    other.apply(l.delta(second));
+    l.onMouseClicked(new Posn(70, 10));
+    byte[] click = l.delta(encoder);
+    t.checkExpect(click.length < 32, true);
+    mirror.apply(click);
+    t.checkExpect(mirror.states, l.compact().tiles);
+    t.checkExpect(mirror.changed.size, 4);
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onKeyEvent("right");
+    mirror.apply(l.delta(encoder));
+    t.checkExpect(mirror.states, l.compact().tiles);
+    t.checkExpect(mirror.power, 8);
+    for (int i = 0; i < 64; i++) {
+      t.checkExpect(mirror.litRadius(i), l.litRadius(i));
+    }
+    // both encoders keep following the board
+    other.apply(l.delta(second));
+    t.checkExpect(other.states, l.compact().tiles);
+    t.checkExpect(other.power, 8);
+    // a dropped encoder is no longer fed, and the one before it still is
+    l.unremote(encoder);
+    t.checkExpect(l.dirty.also, second.pending);
+    t.checkExpect(second.pending.also, null);
+    l.onMouseClicked(new Posn(70, 10));
+    t.checkExpect(encoder.pending.size, 0);
+    t.checkExpect(second.pending.size > 0, true);
+    l.unremote(second);
+    t.checkExpect(l.dirty.also, null);
+    // marks walk a long chain without recursing down it
+    DirtyTiles head = new DirtyTiles(4);
+    DirtyTiles last = head;
+    for (int i = 0; i < 100000; i++) {
+      last.also = new DirtyTiles(4);
+      last.also.clear();
+      last = last.also;
+    }
+    head.mark(2);
+    t.checkExpect(last.list[0], 2);
+    head.markAll();
+    t.checkExpect(last.all, true);
+    DeltaEncoder plain = new DeltaEncoder(64, false);
+    DeltaDecoder copy = new DeltaDecoder(64);
+    copy.apply(plain.diff(l, 8));
+    t.checkExpect(copy.states, l.compact().tiles);
+  }
+
+  void testHeadlessGame(Tester t) {
+    initTest();
+    HeadlessGame game = HeadlessGame.generate(8, 8, 0);
+    t.checkExpect(game.board.tiles, l.compact().tiles);
+    t.checkExpect(game.isWon(), false);
+    game.rotate(1, 0);
+    game.rotate(4, 0);
+    game.rotate(4, 0);
+    game.rotate(4, 0);
+    l.onMouseClicked(new Posn(70, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    t.checkExpect(game.board.tiles, l.compact().tiles);
+    t.checkExpect(game.movePower(Tiles.RIGHT), true);
+    t.checkExpect(game.movePower(Tiles.LEFT), true);
+    t.checkExpect(game.movePower(Tiles.TOP), false);
+    t.checkExpect(game.rotate(8, 0), false);
+    HeadlessGame small = new HeadlessGame(g.compact());
+    small.rotate(0, 0);
+    small.rotate(0, 0);
+    small.rotate(0, 0);
+    small.rotate(1, 0);
+    small.rotate(1, 0);
+    small.rotate(0, 1);
+    small.rotate(0, 1);
+    small.rotate(0, 1);
+    small.rotate(1, 1);
+    small.rotate(1, 1);
+    small.rotate(1, 1);
+    t.checkExpect(small.isWon(), true);
+  }
+
+  void testMetrics(Tester t) {
+    Metrics.reset();
+    Metrics.enabled = false;
+    initTest();
+    t.checkExpect(Metrics.begin(), 0L);
+    t.checkExpect(Metrics.DATA[Metrics.CHECK_LIT].get(Metrics.COUNT), 0L);
+    Metrics.enabled = true;
+    initTest();
+    l.onMouseClicked(new Posn(70, 10));
+    l.onKeyEvent("left");
+    l.makeScene();
+    Metrics.enabled = false;
+    t.checkExpect(Metrics.DATA[Metrics.GENERATE_SORT].get(Metrics.COUNT), 3L);
+    t.checkExpect(Metrics.DATA[Metrics.MOUSE_CLICKED].get(Metrics.COUNT), 1L);
+    t.checkExpect(Metrics.DATA[Metrics.KEY_EVENT].get(Metrics.COUNT), 1L);
+    t.checkExpect(Metrics.DATA[Metrics.MAKE_SCENE].get(Metrics.COUNT), 1L);
+    // the blocked arrow key does not relight
+    t.checkExpect(Metrics.DATA[Metrics.CHECK_LIT].get(Metrics.COUNT), 3L);
+    t.checkExpect(Metrics.DATA[Metrics.LIGHT_VISITS].get(Metrics.COUNT), 4L);
+    t.checkExpect(Metrics.percentile(Metrics.GENERATE_SORT, 0.5) > 0, true);
+    t.checkExpect(Metrics.csv().startsWith("metric,count"), true);
+    t.checkExpect(new Metrics.Bean().getCounts()[Metrics.KEY_EVENT], 1L);
+    Metrics.record(Metrics.LIGHT_VISITS, 5);
+    t.checkExpect(Metrics.DATA[Metrics.LIGHT_VISITS].get(Metrics.COUNT), 4L);
+    Metrics.reset();
+    t.checkExpect(Metrics.DATA[Metrics.KEY_EVENT].get(Metrics.COUNT), 0L);
+    // start publishes the bean, once however often it is called, and
+    // only dumps when lightemall.metrics.dump is set
+    try {
+      Metrics.start();
+      Metrics.register();
+      ObjectName name = new ObjectName("lightemall:type=Metrics");
+      t.checkExpect(ManagementFactory.getPlatformMBeanServer().isRegistered(name), true);
+      t.checkExpect(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Enabled"),
+          false);
+      t.checkExpect(Metrics.dump, null);
+      ByteArrayOutputStream dumped = new ByteArrayOutputStream();
+      ScheduledExecutorService timer = Metrics.dumpEvery(5, new PrintStream(dumped, true));
+      for (int i = 0; i < 400 && dumped.size() == 0; i++) {
+        Thread.sleep(5);
+      }
+      timer.shutdownNow();
+      t.checkExpect(dumped.toString().startsWith("metric,count"), true);
+    }
+    catch (Exception e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  void testGetPiece(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(0, 0), l.board.get(0).get(0));
+    t.checkExpect(l.getPiece(5, 0), l.board.get(5).get(0));
+    t.checkExpect(l.getPiece(0, 3), l.board.get(0).get(3));
+    t.checkExpect(l.getPiece(2, 4), l.board.get(2).get(4));
+  }
+
+  void testGetEdges(Tester t) {
+    initTest();
+    t.checkExpect(l.getEdges().size(), 112);
+  }
+
+  void testHeapSort(Tester t) {
+    initTest();
+    ArrayList<Edge> edges = l.getEdges();
+    boolean sorted = true;
+    for (int i = 0; i < edges.size() - 1; i++) {
+      if (edges.get(i).weight > edges.get(i + 1).weight) {
+        sorted = false;
+      }
+    }
+    t.checkExpect(sorted, false);
+    sorted = true;
+    l.heapSort(edges);
+    for (int i = 0; i < edges.size() - 1; i++) {
+      if (edges.get(i).weight > edges.get(i + 1).weight) {
+        sorted = false;
+      }
+    }
+    t.checkExpect(sorted, true);
+
+  }
+
+  void testEdgeList(Tester t) {
+    initTest();
+    l.rand = new Random(0);
+    ArrayList<Edge> edges = l.getEdges();
+    EdgeList packed = new EdgeList(8, 8, new Random(0));
+    t.checkExpect(packed.size, 112);
+    t.checkExpect(packed.weight(0), edges.get(0).weight);
+    t.checkExpect(packed.from(packed.id(0)), 0);
+    t.checkExpect(packed.to(packed.id(0)), 1);
+    t.checkExpect(packed.from(packed.id(1)), 0);
+    t.checkExpect(packed.to(packed.id(1)), 8);
+    for (EdgeSort strategy : EdgeSort.values()) {
+      EdgeList sorted = new EdgeList(20, 15, new Random(3));
+      sorted.sort(strategy);
+      boolean inOrder = true;
+      for (int i = 0; i < sorted.size - 1; i++) {
+        if (sorted.weight(i) > sorted.weight(i + 1)) {
+          inOrder = false;
+        }
+      }
+      t.checkExpect(inOrder, true);
+      t.checkExpect(sorted.spanningTree().length, 20 * 15 - 1);
+    }
+    // with only four weights almost every edge ties, and the heap sorts
+    // still order the ties just as heapSort does
+    LightEmAll wide = new LightEmAll(30, 20, new Random(0), null);
+    wide.rand = this.fewWeights(3);
+    ArrayList<Edge> tied = wide.getEdges();
+    wide.heapSort(tied);
+    for (EdgeSort strategy : EdgeSort.values()) {
+      EdgeList sorted = new EdgeList(30, 20, this.fewWeights(3));
+      sorted.sort(strategy);
+      boolean same = true;
+      for (int i = 0; i < sorted.size; i++) {
+        Edge edge = tied.get(i);
+        int from = edge.fromNode.col * 20 + edge.fromNode.row;
+        int to = edge.toNode.col * 20 + edge.toNode.row;
+        int id = sorted.id(i);
+        if (sorted.from(id) != from || sorted.to(id) != to) {
+          same = false;
+        }
+      }
+      t.checkExpect(same, strategy != EdgeSort.RADIX);
+    }
+  }
+
+  // Return a Random whose nextInt gives only four weights
+  Random fewWeights(long seed) {
+    return new Random(seed) {
+      public int nextInt() {
+        return this.nextInt(4);
+      }
+    };
+  }
+
+  void testPackedGeneration(Tester t) {
+    for (EdgeSort strategy : EdgeSort.values()) {
+      LightEmAll legacy = new LightEmAll(9, 7, new Random(11), null);
+      LightEmAll packed = new LightEmAll(9, 7, new Random(11), strategy);
+      for (int i = 0; i < legacy.mst.size(); i++) {
+        t.checkExpect(packed.mst.get(i).fromNode.col, legacy.mst.get(i).fromNode.col);
+        t.checkExpect(packed.mst.get(i).fromNode.row, legacy.mst.get(i).fromNode.row);
+        t.checkExpect(packed.mst.get(i).toNode.col, legacy.mst.get(i).toNode.col);
+        t.checkExpect(packed.mst.get(i).toNode.row, legacy.mst.get(i).toNode.row);
+        t.checkExpect(packed.mst.get(i).weight, legacy.mst.get(i).weight);
+      }
+    }
+  }
+
+  void testKruskals(Tester t) {
+    initTest();
+    t.checkExpect(l.mst.size(), l.nodes.size() - 1);
+    ArrayList<Edge> edges = l.getEdges();
+    l.heapSort(edges);
+    int size = edges.size();
+    l.kruskals(edges);
+    t.checkExpect(edges.size(), size);
+    t.checkExpect(l.mst.size(), l.nodes.size() - 1);
+    t.checkExpect(l.mst.get(0), edges.get(0));
+
+  }
+
+  void testFind(Tester t) {
+    initTest();
+    HashMap<GamePiece, GamePiece> h = new HashMap<GamePiece, GamePiece>();
+    h.put(l.getPiece(0, 0), l.getPiece(0, 0));
+    h.put(l.getPiece(1, 0), l.getPiece(1, 0));
+    t.checkExpect(l.find(h, l.getPiece(0, 0)), l.getPiece(0, 0));
+    t.checkExpect(l.find(h, l.getPiece(1, 0)), l.getPiece(1, 0));
+    h.put(l.getPiece(0, 0), l.getPiece(1, 0));
+    t.checkExpect(l.find(h, l.getPiece(0, 0)), l.getPiece(1, 0));
+  }
+
+  void testUnion(Tester t) {
+    initTest();
+    HashMap<GamePiece, GamePiece> h = new HashMap<GamePiece, GamePiece>();
+    h.put(l.getPiece(0, 0), l.getPiece(0, 0));
+    h.put(l.getPiece(1, 0), l.getPiece(1, 0));
+    l.union(h, l.getPiece(0, 0), l.getPiece(1, 0));
+    t.checkExpect(h.get(l.getPiece(0, 0)), l.getPiece(1, 0));
+  }
+
+  void testDisjointSet(Tester t) {
+    DisjointSet d = new DisjointSet(5);
+    t.checkExpect(d.find(3), 3);
+    t.checkExpect(d.union(0, 1), true);
+    t.checkExpect(d.union(2, 1), true);
+    t.checkExpect(d.union(0, 2), false);
+    t.checkExpect(d.find(2), d.find(0));
+    t.checkExpect(d.find(3) == d.find(0), false);
+    t.checkExpect(d.union(3, 4), true);
+    t.checkExpect(d.union(4, 0), true);
+    t.checkExpect(d.parent[3], d.find(1));
+    d.reset();
+    t.checkExpect(d.find(3), 3);
+    t.checkExpect(d.union(0, 1), true);
+    // a forest set from outside keeps its ranks, so union still links
+    // the shorter tree under the taller
+    d.set(new int[] {0, 0, 2, 2, 4}, new byte[] {1, 0, 1, 0, 0});
+    t.checkExpect(d.find(1), 0);
+    t.checkExpect(d.union(4, 3), true);
+    t.checkExpect(d.parent[4], 2);
+    t.checkExpect(d.union(1, 3), true);
+    t.checkExpect(d.rank[0], (byte) 2);
+    t.checkExpect(d.find(4), 0);
+  }
+
+  void testConnectPieces(Tester t) {
+    initTest();
+    t.checkExpect(l.mst.get(0).fromNode, l.getPiece(3, 3));
+    t.checkExpect(l.mst.get(0).toNode, l.getPiece(4, 3));
+    t.checkExpect(l.getPiece(3, 3).right, true);
+    t.checkExpect(l.getPiece(4, 3).left, true);
+    t.checkExpect(l.mst.get(1).fromNode, l.getPiece(5, 4));
+    t.checkExpect(l.mst.get(1).toNode, l.getPiece(5, 5));
+    t.checkExpect(l.getPiece(5, 4).bottom, true);
+    // This is what the piece looks like pre-randomize
+    l.getPiece(5, 5).rotate();
+    t.checkExpect(l.getPiece(5, 5).top, true);
+  }
+
+  void testDraw(Tester t) {
+    initTest();
+    WorldImage powered = l.getPiece(0, 0).draw(l.radius);
+    t.checkExpect(l.getPiece(0, 0).draw(l.radius), powered);
+    t.checkExpect(l.getPiece(0, 0).draw(l.radius, 30) == powered, false);
+    l.getPiece(0, 0).powerStation = false;
+    t.checkExpect(l.getPiece(0, 0).draw(l.radius) == powered, false);
+    GamePiece unlit = l.getPiece(7, 7);
+    t.checkExpect(unlit.draw(l.radius), TileImageCache.forSize(60).image(unlit.mask(),
+        false, 0, false));
+    t.checkExpect(TileImageCache.SHADES[2], TileImageCache.SHADES[0].darker().darker());
+    t.checkExpect(TileImageCache.SHADES[TileImageCache.MAX_SHADE], Color.BLACK);
+    t.checkExpect(TileImageCache.forSize(60).image(5, true, 40, false),
+        TileImageCache.forSize(60).image(5, true, TileImageCache.MAX_SHADE, false));
+    Color[] top = TileImageCache.forSize(20).pixels(Tiles.TOP_BIT, true, 0, false);
+    t.checkExpect(TileImageCache.forSize(20).pixels(Tiles.TOP_BIT, true, 0, false) == top, true);
+    t.checkExpect(top[0], Color.BLACK);
+    t.checkExpect(top[10], TileImageCache.SHADES[0]);
+    t.checkExpect(top[5 * 20 + 5], TileImageCache.FILL);
+    t.checkExpect(top[15 * 20 + 10], TileImageCache.FILL);
+    t.checkExpect(TileImageCache.forSize(20).pixels(0, false, 0, true)[10 * 20 + 10],
+        Color.CYAN);
+  }
+
+  void testMakeScene(Tester t) {
+    initTest();
+    l.makeScene();
+    ComputedPixelImage first = l.detail;
+    t.checkExpect(l.scenePlaced, 64);
+    l.makeScene();
+    t.checkExpect(l.detail == first, true);
+    t.checkExpect(l.scenePlaced, 64);
+    l.onMouseClicked(new Posn(70, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    l.onMouseClicked(new Posn(250, 10));
+    int changed = l.dirty.size;
+    t.checkExpect(changed > 2 && changed < 64, true);
+    t.checkExpect(l.dirty.flags[l.height], true);
+    l.makeScene();
+    t.checkExpect(l.detail == first, true);
+    t.checkExpect(l.scenePlaced, 64 + changed);
+    t.checkExpect(l.dirty.size, 0);
+    l.onKeyEvent("right");
+    t.checkExpect(l.dirty.flags[0], true);
+    t.checkExpect(l.dirty.flags[l.height], true);
+    l.dirty.markAll();
+    l.makeScene();
+    t.checkExpect(l.detail == first, false);
+    t.checkExpect(l.scenePlaced, 64);
+  }
+
+  void testViewport(Tester t) {
+    Viewport v = new Viewport(120, 60, 20);
+    t.checkExpect(v.firstCol(), 0);
+    t.checkExpect(v.lastCol(100), 5);
+    t.checkExpect(v.lastRow(100), 2);
+    v.scroll(50, 10, 100, 100);
+    t.checkExpect(v.firstCol(), 2);
+    t.checkExpect(v.lastCol(100), 8);
+    t.checkExpect(v.screenX(3), 10);
+    t.checkExpect(v.tileAt(5, 5, 100, 100), 2 * 100 + 0);
+    t.checkExpect(v.tileAt(10, 5, 100, 100), -1);
+    v.scroll(-1000, -1000, 100, 100);
+    t.checkExpect(v.offsetX, 0);
+    v.scroll(5000, 5000, 100, 100);
+    t.checkExpect(v.offsetX, 100 * 20 - 120);
+    t.checkExpect(v.offsetY, 100 * 20 - 60);
+    v.zoom(10, 100, 100);
+    t.checkExpect(v.scale, 10);
+    t.checkExpect(v.detailed(), false);
+    t.checkExpect(v.offsetX, 100 * 10 - 120);
+  }
+
+  void testViewScene(Tester t) {
+    initTest();
+    l.view = new Viewport(120, 120, 60);
+    l.makeScene();
+    t.checkExpect(l.scenePlaced, 4);
+    l.onKeyEvent("d");
+    t.checkExpect(l.view.offsetX, 60);
+    t.checkExpect(l.pieceAt(new Posn(10, 10)), l.height);
+    int before = l.getPiece(1, 0).mask();
+    l.onMouseClicked(new Posn(10, 10));
+    t.checkExpect(l.getPiece(1, 0).mask(), Tiles.rotate(before));
+    l.makeScene();
+    t.checkExpect(l.scenePlaced, 4);
+    l.onKeyEvent("-");
+    l.onKeyEvent("-");
+    l.onKeyEvent("-");
+    t.checkExpect(l.view.scale, 7);
+    l.makeScene();
+    t.checkExpect(l.overview == null, false);
+    t.checkExpect(l.detail, null);
+    t.checkExpect(l.onViewKey("right"), false);
+    t.checkExpect(l.onViewKey("s"), true);
+  }
+
+  void testUnlight(Tester t) {
+    initTest();
+    t.checkExpect(l.getPiece(0, 0).isLit, true);
+    l.getPiece(0, 0).unlight();
+    t.checkExpect(l.getPiece(0, 0).isLit, false);
+  }
+
+  void testLightEmAll(Tester t) {
+    initTest();
+    l.bigBang(x * 60, y * 60);
+  }
+
+}
\ No newline at end of file
@@ -0,0 +1,155 @@
+package lightemall;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+import javalib.worldimages.Posn;
+
+// Times the hot paths of the game over a range of board sizes and
+// radii, printing one CSV line per case:
+//   benchmark,width,height,radius,iterations,median_ns,min_ns
+// Run with the board sizes to try as arguments, e.g.
+//   java lightemall.LightEmAllBenchmark 8 64 256 1000 2000
+class LightEmAllBenchmark {
+  static final int[] SIZES = { 8, 64, 256, 1000, 2000 };
+  static final int[] RADII = { 8, 64, Integer.MAX_VALUE };
+  // every case runs at least this many times and for at least this long
+  static final int MIN_ITERATIONS = 5;
+  static final long MIN_NANOS = 500_000_000L;
+  static final int MAX_ITERATIONS = 200;
+
+  // results are folded in here so the work cannot be optimised away
+  long sink;
+
+  public static void main(String[] args) {
+    int[] sizes = args.length == 0 ? SIZES : Arrays.stream(args).mapToInt(Integer::parseInt)
+        .toArray();
+    LightEmAllBenchmark bench = new LightEmAllBenchmark();
+    System.out.println("benchmark,width,height,radius,iterations,median_ns,min_ns");
+    for (int size : sizes) {
+      bench.generation(size);
+      for (int radius : RADII) {
+        bench.lighting(size, radius);
+      }
+      bench.scene(size);
+    }
+    System.err.println("sink " + bench.sink);
+  }
+
+  // Times each phase of generating a size by size board
+  void generation(int size) {
+    this.time("edges", size, 8, () -> () -> this.use(new EdgeList(size, size, new Random(1))));
+    for (EdgeSort strategy : EdgeSort.values()) {
+      this.time("sort_" + strategy, size, 8, () -> {
+        EdgeList edges = new EdgeList(size, size, new Random(1));
+        return () -> {
+          edges.sort(strategy);
+          this.use(edges.keys[0]);
+        };
+      });
+    }
+    EdgeList sorted = new EdgeList(size, size, new Random(1));
+    sorted.sort(EdgeSort.RADIX);
+    this.time("mst", size, 8, () -> () -> this.use(sorted.spanningTree()));
+    int[] tree = sorted.spanningTree();
+    this.time("connect", size, 8, () -> {
+      CompactBoard board = new CompactBoard(size, size);
+      return () -> {
+        for (int i : tree) {
+          board.connect(sorted.id(i));
+        }
+      };
+    });
+    this.time("randomize", size, 8, () -> {
+      CompactBoard board = new CompactBoard(size, size);
+      return () -> board.randomize(new Random(1));
+    });
+    this.time("generateBoard", size, 8, () -> () -> this.use(
+        new LightEmAll(size, size, new Random(1))));
+    this.time("generateCompact", size, 8, () -> () -> this.use(
+        CompactBoard.generate(size, size, new Random(1), EdgeSort.HEAP)));
+    BatchGenerator.Worker worker = new BatchGenerator.Worker(size, size, EdgeSort.HEAP);
+    this.time("generateWorker", size, 8, () -> () -> this.use(worker.generate(1)));
+    BatchGenerator batch = new BatchGenerator(size, size,
+        Runtime.getRuntime().availableProcessors());
+    this.time("generateBatch16", size, 8, () -> () -> batch.generate(1, 16,
+        (seed, board) -> this.use(board.tiles[0])));
+    batch.shutdown();
+  }
+
+  // Times relighting and rotating on a size by size board with the
+  // given radius
+  void lighting(int size, int radius) {
+    LightEmAll world = new LightEmAll(size, size, new Random(1));
+    world.radius = radius;
+    this.time("checkLit", size, radius, () -> () -> {
+      world.checkLit();
+      this.use(world.lighting.litCount);
+    });
+    Random clicks = new Random(2);
+    this.time("onMouseClicked", size, radius, () -> {
+      Posn pos = new Posn(clicks.nextInt(size) * world.tileSize + 1,
+          clicks.nextInt(size) * world.tileSize + 1);
+      return () -> {
+        world.onMouseClicked(pos);
+        this.use(world.lighting.litCount);
+      };
+    });
+    HeadlessGame game = HeadlessGame.generate(size, size, 1);
+    game.board.radius = radius;
+    game.relight();
+    this.time("headlessRotate", size, radius, () -> {
+      int col = clicks.nextInt(size);
+      int row = clicks.nextInt(size);
+      return () -> {
+        game.rotate(col, row);
+        this.use(game.lighting.litCount);
+      };
+    });
+  }
+
+  // Times drawing a size by size board from scratch and after one click
+  void scene(int size) {
+    LightEmAll world = new LightEmAll(size, size, new Random(1));
+    this.time("makeScene", size, 8, () -> {
+      world.dirty.markAll();
+      return () -> this.use(world.makeScene());
+    });
+    this.time("makeSceneDirty", size, 8, () -> {
+      world.makeScene();
+      world.onMouseClicked(new Posn(world.tileSize + 1, 1));
+      return () -> this.use(world.makeScene());
+    });
+  }
+
+  // Runs the operations made by setup until enough time has passed,
+  // timing only the operations, and prints the results
+  void time(String name, int size, int radius, Supplier<Runnable> setup) {
+    long[] samples = new long[MAX_ITERATIONS];
+    int n = 0;
+    long total = 0;
+    // one untimed run to load classes and warm caches
+    setup.get().run();
+    while (n < MAX_ITERATIONS && (n < MIN_ITERATIONS || total < MIN_NANOS)) {
+      Runnable op = setup.get();
+      long start = System.nanoTime();
+      op.run();
+      samples[n] = System.nanoTime() - start;
+      total += samples[n++];
+    }
+    long[] taken = Arrays.copyOf(samples, n);
+    Arrays.sort(taken);
+    System.out.println(name + "," + size + "," + size + ","
+        + (radius == Integer.MAX_VALUE ? "unbounded" : Integer.toString(radius)) + "," + n
+        + "," + taken[n / 2] + "," + taken[0]);
+  }
+
+  // Folds a result into the sink
+  void use(Object result) {
+    this.sink += System.identityHashCode(result);
+  }
+
+  synchronized void use(long result) {
+    this.sink += result;
+  }
+}
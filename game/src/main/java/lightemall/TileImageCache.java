@@ -0,0 +1,167 @@
+package lightemall;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import javalib.worldimages.*;
+
+// Prebuilt tile images for one tile size. A tile only looks different
+// by its connection mask, whether it is lit, how many times its wire
+// colour is darkened and whether it holds the power station, so every
+// look is built once and shared by all tiles and frames after that,
+// both as an image and as the pixels a raster is painted with
+class TileImageCache {
+  // darkening a colour this many times always gives black
+  static final int MAX_SHADE = 16;
+  static final Color FILL = Color.decode("#444444");
+  static final Color UNLIT = Color.decode("#cccccc");
+  // SHADES[k] is the lit wire colour darkened k times
+  static final Color[] SHADES = new Color[MAX_SHADE + 1];
+  // the caches for every tile size in use
+  static final HashMap<Integer, TileImageCache> CACHES = new HashMap<Integer, TileImageCache>();
+
+  static {
+    SHADES[0] = Color.decode("#ffcc00");
+    for (int k = 1; k <= MAX_SHADE; k++) {
+      SHADES[k] = SHADES[k - 1].darker();
+    }
+  }
+
+  // the width and height of the images, in pixels
+  int size;
+  // the images built so far, indexed by key
+  WorldImage[] images;
+  // the pixels of the looks built so far, row by row, indexed by key
+  Color[][] rasters;
+
+  TileImageCache(int size) {
+    this.size = size;
+    this.images = new WorldImage[16 * 2 * 2 * (MAX_SHADE + 1)];
+    this.rasters = new Color[this.images.length][];
+  }
+
+  // Return the shared cache for the given tile size
+  static TileImageCache forSize(int size) {
+    TileImageCache cache = CACHES.get(size);
+    if (cache == null) {
+      cache = new TileImageCache(size);
+      CACHES.put(size, cache);
+    }
+    return cache;
+  }
+
+  // Return the image of a tile with the given look, building it the
+  // first time it is asked for
+  WorldImage image(int mask, boolean lit, int shade, boolean powerStation) {
+    int key = key(mask, lit, shade, powerStation);
+    if (this.images[key] == null) {
+      this.images[key] = this.build(mask, wire(lit, shade), powerStation);
+    }
+    return this.images[key];
+  }
+
+  // Return the pixels of a tile with the given look, row by row, drawing
+  // them the first time they are asked for
+  Color[] pixels(int mask, boolean lit, int shade, boolean powerStation) {
+    int key = key(mask, lit, shade, powerStation);
+    if (this.rasters[key] == null) {
+      this.rasters[key] = this.rasterize(mask, wire(lit, shade), powerStation);
+    }
+    return this.rasters[key];
+  }
+
+  // Return the index of a look in images and rasters
+  static int key(int mask, boolean lit, int shade, boolean powerStation) {
+    shade = lit ? Math.max(0, Math.min(MAX_SHADE, shade)) : 0;
+    return ((shade * 2 + (powerStation ? 1 : 0)) * 2 + (lit ? 1 : 0)) * 16 + mask;
+  }
+
+  // Return the wire colour of a look
+  static Color wire(boolean lit, int shade) {
+    return lit ? SHADES[Math.max(0, Math.min(MAX_SHADE, shade))] : UNLIT;
+  }
+
+  // Builds the image of a tile with the given wires, wire colour and
+  // power station
+  WorldImage build(int mask, Color wire, boolean powerStation) {
+    RectangleImage outline = new RectangleImage(this.size, this.size, OutlineMode.OUTLINE,
+        Color.BLACK);
+    RectangleImage fill = new RectangleImage(this.size, this.size, OutlineMode.SOLID, FILL);
+    LineImage vLine = new LineImage(new Posn(0, this.size / 2), wire);
+    LineImage hLine = new LineImage(new Posn(this.size / 2, 0), wire);
+
+    OverlayImage ret = new OverlayImage(outline, fill);
+    if ((mask & Tiles.TOP_BIT) != 0) {
+      ret = new OverlayImage(vLine.movePinhole(0, this.size / 4), ret);
+    }
+    if ((mask & Tiles.BOTTOM_BIT) != 0) {
+      ret = new OverlayImage(vLine.movePinhole(0, -this.size / 4), ret);
+    }
+    if ((mask & Tiles.LEFT_BIT) != 0) {
+      ret = new OverlayImage(hLine.movePinhole(this.size / 4, 0), ret);
+    }
+    if ((mask & Tiles.RIGHT_BIT) != 0) {
+      ret = new OverlayImage(hLine.movePinhole(-this.size / 4, 0), ret);
+    }
+    if (powerStation) {
+      ret = new OverlayImage(new StarImage(this.size / 3, OutlineMode.SOLID, Color.CYAN), ret);
+    }
+    return ret.movePinhole(-this.size / 2, -this.size / 2);
+  }
+
+  // Draws the same tile as build into pixels, sharing one Color object
+  // per colour
+  Color[] rasterize(int mask, Color wire, boolean powerStation) {
+    int half = this.size / 2;
+    BufferedImage img = new BufferedImage(this.size, this.size, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = img.createGraphics();
+    g.setColor(FILL);
+    g.fillRect(0, 0, this.size, this.size);
+    g.setColor(Color.BLACK);
+    g.drawRect(0, 0, this.size - 1, this.size - 1);
+    g.setColor(wire);
+    if ((mask & Tiles.TOP_BIT) != 0) {
+      g.drawLine(half, 0, half, half);
+    }
+    if ((mask & Tiles.BOTTOM_BIT) != 0) {
+      g.drawLine(half, half, half, this.size - 1);
+    }
+    if ((mask & Tiles.LEFT_BIT) != 0) {
+      g.drawLine(0, half, half, half);
+    }
+    if ((mask & Tiles.RIGHT_BIT) != 0) {
+      g.drawLine(half, half, this.size - 1, half);
+    }
+    if (powerStation) {
+      // a five-pointed star, as StarImage draws it
+      int[] xs = new int[10];
+      int[] ys = new int[10];
+      double outer = this.size / 3.0;
+      for (int i = 0; i < 10; i++) {
+        double r = i % 2 == 0 ? outer : outer / 2;
+        double angle = Math.PI * i / 5 - Math.PI / 2;
+        xs[i] = (int) Math.round(half + r * Math.cos(angle));
+        ys[i] = (int) Math.round(half + r * Math.sin(angle));
+      }
+      g.setColor(Color.CYAN);
+      g.fillPolygon(xs, ys, 10);
+    }
+    g.dispose();
+
+    HashMap<Integer, Color> colors = new HashMap<Integer, Color>();
+    Color[] pixels = new Color[this.size * this.size];
+    for (int y = 0; y < this.size; y++) {
+      for (int x = 0; x < this.size; x++) {
+        int rgb = img.getRGB(x, y);
+        Color c = colors.get(rgb);
+        if (c == null) {
+          c = new Color(rgb);
+          colors.put(rgb, c);
+        }
+        pixels[y * this.size + x] = c;
+      }
+    }
+    return pixels;
+  }
+}